@@ -13,6 +13,7 @@ import androidx.core.view.WindowInsetsControllerCompat;
 
 import static com.unknownn.aiproject.HomeScreen.Difficulty.*;
 
+import com.unknownn.aiproject.classes.EngineBudget;
 import com.unknownn.aiproject.classes.MyTextView;
 import com.unknownn.aiproject.databinding.ActivityHomeScreenBinding;
 
@@ -85,11 +86,16 @@ public class HomeScreen extends AppCompatActivity {
     }
 
     enum Difficulty{
-        EASY(1), MEDIUM(2), HARD(3);
+        // the time is the worst case per move, the nodes / playouts make the strength on a typical phone
+        EASY(1, new EngineBudget(1_500L, 20_000L, 5_000)),
+        MEDIUM(2, new EngineBudget(3_000L, 150_000L, 30_000)),
+        HARD(3, new EngineBudget(6_000L, 600_000L, 150_000));
 
         final int id;
-        Difficulty(int id) {
+        final EngineBudget budget;
+        Difficulty(int id, EngineBudget budget) {
             this.id = id;
+            this.budget = budget;
         }
     }
 }
@@ -2,12 +2,12 @@ package com.unknownn.aiproject;
 
 import android.app.Dialog;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
 
@@ -18,17 +18,21 @@ import androidx.core.view.WindowInsetsControllerCompat;
 
 import com.unknownn.aiproject.classes.AlphaBetaApplier;
 import com.unknownn.aiproject.classes.CellState;
+import com.unknownn.aiproject.classes.EngineSession;
 import com.unknownn.aiproject.classes.FuzzyApplier;
 import com.unknownn.aiproject.classes.GameBoard;
 import com.unknownn.aiproject.classes.GeneticApplier;
 import com.unknownn.aiproject.classes.Helper;
+import com.unknownn.aiproject.classes.MctsApplier;
+import com.unknownn.aiproject.classes.PositionStore;
 import com.unknownn.aiproject.classes.SoundController;
+import com.unknownn.aiproject.classes.WriteBehindQueue;
 import com.unknownn.aiproject.databinding.ActivityMainBinding;
 import com.unknownn.aiproject.databinding.GameOverLayoutBinding;
 import com.unknownn.aiproject.enums.PredictionAlgo;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -36,6 +40,8 @@ public class MainActivity extends AppCompatActivity {
 
     private ActivityMainBinding binding = null;
     private SoundController soundController = null;
+    private PositionStore positionStore = null;
+    private WriteBehindQueue saveQueue = null;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -77,13 +83,16 @@ public class MainActivity extends AppCompatActivity {
 
     private void setClickListener(){
 //        binding.tvAlgoType.setOnClickListener( v -> binding.gameBoard.swapPredictionAlgo(false));
+        binding.tvMoveNow.setOnClickListener( v -> binding.gameBoard.moveNow());
     }
 
     private void setupBoard(HomeScreen.Difficulty difficulty, boolean debugMode){
 
         GeneticApplier.destroy();
         AlphaBetaApplier.destroy();
+        MctsApplier.destroy();
         FuzzyApplier.destroy();
+        difficulty.budget.apply();
 
         soundController = SoundController.getInstance(this);
 
@@ -94,7 +103,7 @@ public class MainActivity extends AppCompatActivity {
                 binding.gameBoard.fixPredictionAlgo(PredictionAlgo.GENETIC_ALGO); // use both GA
                 binding.tvAlgoType.setText(getString(R.string.genetic_algo));
             }
-            case MEDIUM -> binding.gameBoard.fixPredictionAlgo(null); // use both AB, GA
+            case MEDIUM -> binding.gameBoard.fixPredictionAlgo(null); // fuzzy picks AB or MCTS
             case HARD -> binding.gameBoard.fixPredictionAlgo(PredictionAlgo.ALPHA_BETA_PRUNING); // use both AB
         }
 
@@ -113,12 +122,11 @@ public class MainActivity extends AppCompatActivity {
                     Helper.showSafeToast(MainActivity.this,"Prediction algo is changed");
                 }
 
-                if(binding.gameBoard.getPredictionAlgo() == PredictionAlgo.ALPHA_BETA_PRUNING){
-                    binding.tvAlgoType.setText(getString(R.string.alpha_beta));
-                }
-                else{
-                    binding.tvAlgoType.setText(getString(R.string.genetic_algo));
-                }
+                binding.tvAlgoType.setText(switch (binding.gameBoard.getPredictionAlgo()){
+                    case ALPHA_BETA_PRUNING -> getString(R.string.alpha_beta);
+                    case GENETIC_ALGO -> getString(R.string.genetic_algo);
+                    case MCTS -> getString(R.string.mcts);
+                });
             }
 
             @Override
@@ -146,6 +154,7 @@ public class MainActivity extends AppCompatActivity {
                 else{
                     binding.myConfuseBar.stopRotating();
                 }
+                binding.tvMoveNow.setVisibility(show ? View.VISIBLE : View.GONE);
             }
 
             @Override
@@ -155,26 +164,37 @@ public class MainActivity extends AppCompatActivity {
 
         });
 
-        final ExecutorService service = Executors.newFixedThreadPool(5);
-
-        AlphaBetaApplier.getInstance().setPreSavedListener((strBoard, score) -> {
-            service.submit(() -> {
-                final SharedPreferences sp = getSharedPreferences("sp",MODE_PRIVATE);
-
-                if(sp.contains(strBoard)) return;
-
-                final int size = sp.getInt("size",0);
-                System.out.println("Current size is: "+size);
-
-                final SharedPreferences.Editor editor = sp.edit();
+        positionStore = new PositionStore(new File(getFilesDir(), "positions.bin"));
+        saveQueue = new WriteBehindQueue(positionStore);
+        AlphaBetaApplier.getInstance().setPositionStore(positionStore, saveQueue);
+
+        final ExecutorService service = Executors.newSingleThreadExecutor();
+        service.execute(() -> { // searches just don't find saved scores until it is loaded
+            try {
+                positionStore.load();
+                getSharedPreferences("sp",MODE_PRIVATE).edit().clear().apply(); // old depth-less scores
+            } catch (IOException e) {
+                System.out.println("Position store failed: "+e.getMessage());
+            }
+        });
+        service.shutdown();
+    }
 
-                editor.putInt(strBoard, score);
-                editor.putString((size+1)+"", strBoard);
-                editor.putInt("size",size+1);
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if(saveQueue != null) saveQueue.flush();
+    }
 
-                editor.apply();
-            });
-        }, getPreSavedScore());
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        binding.gameBoard.release();
+        GeneticApplier.destroy();
+        AlphaBetaApplier.destroy();
+        MctsApplier.destroy();
+        EngineSession.destroy(); // the threads of all of them
+        if(saveQueue != null) saveQueue.close(); // closes the store after the last batch
     }
 
     private void showGameOver(boolean haveIWon){
@@ -209,23 +229,5 @@ public class MainActivity extends AppCompatActivity {
         dialog.show();
     }
 
-    private Map<String, Integer> getPreSavedScore(){
-        final Map<String,Integer> scoreMap = new HashMap<>();
-
-        final SharedPreferences sp = getSharedPreferences("sp",MODE_PRIVATE);
-        final int size = sp.getInt("size",0);
-
-        for(int i=1; i<=size; i++){
-            final String key = sp.getString((i+1)+"", null);
-            if(key == null) continue;
-
-            final int value = sp.getInt(key,0);
-            if(value == 0) continue;
-
-            scoreMap.put(key,value);
-        }
-
-        return scoreMap;
-    }
 
 }
@@ -1,8 +1,252 @@
 package com.unknownn.aiproject;
 
+import com.unknownn.aiproject.classes.AlphaBetaApplier;
+import com.unknownn.aiproject.classes.BitBoard;
+import com.unknownn.aiproject.classes.BoardEvaluator;
+import com.unknownn.aiproject.classes.Calculator;
+import com.unknownn.aiproject.classes.CellState;
+import com.unknownn.aiproject.classes.DistanceEvaluator;
+import com.unknownn.aiproject.classes.EngineBudget;
+import com.unknownn.aiproject.classes.Helper;
+import com.unknownn.aiproject.listener.AlphaBetaListener;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import kotlin.Pair;
+
+// Offline benchmark for the engines, run it as a plain java main
 public class PreCalc {
 
+    // fixed positions in Helper.convertBoardToString format, blue (bot) to move
+    private static final String[] POSITIONS = {
+            "LLLLLLLLLLLLRLLLLLLLLLLLL",
+            "LLLLLLLBLLLLRRLLLLLLLLLLL",
+            "LLLLLLLBLLLRRRLLLBLLLLLLL",
+            "LLLLLLRBLLLRRRBLLBLLLLLLL",
+            "LLLLLLLLLLLLLLLLLBLLLLLLRRLLLLLLLLLLLLLLLLLLLLLLL",
+            "LLLLLLLLLLLLLLLLLBLLLLLRRRLLLLLBLLLLLLLLLLLLLLLLL",
+    };
+    private static final int DEPTH = 3;
+    private static final int SPEEDUP_DEPTH = 4;
+    private static final int MATCH_N = 5;
+    private static final int MATCH_DEPTH = 2;
+
     public static void main(String[] args) {
-        System.out.println("a");
+        compareMoveOrdering();
+        compareParallelSearch(args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors());
+        compareEvaluators(Calculator.HEURISTIC, DistanceEvaluator.getInstance());
+        compareDifficulties();
+        System.exit(0);
+    }
+
+    // nodes searched per move at a fixed depth, with and without move ordering
+    private static void compareMoveOrdering(){
+        long totalBefore = 0, totalAfter = 0;
+
+        for(String position : POSITIONS){
+            final long before = countNodes(position, false);
+            final long after = countNodes(position, true);
+            totalBefore += before;
+            totalAfter += after;
+
+            System.out.println(position + ": " + before + " -> " + after + " nodes");
+        }
+        System.out.println("Total: " + totalBefore + " -> " + totalAfter + " nodes");
+    }
+
+    // time to reach a fixed depth on all positions, single thread vs the given number of threads
+    private static void compareParallelSearch(int threads){
+        final long single = timeSearch(AlphaBetaApplier.SearchMode.ROOT_SPLIT, 1);
+        final long rootSplit = timeSearch(AlphaBetaApplier.SearchMode.ROOT_SPLIT, threads);
+        final long lazySmp = timeSearch(AlphaBetaApplier.SearchMode.LAZY_SMP, threads);
+
+        System.out.println("Depth " + SPEEDUP_DEPTH + ", 1 thread: " + single + "ms");
+        System.out.println("Root split, " + threads + " threads: " + rootSplit + "ms, speedup " + speedup(single, rootSplit));
+        System.out.println("Lazy SMP, " + threads + " threads: " + lazySmp + "ms, speedup " + speedup(single, lazySmp));
+    }
+
+    private static long timeSearch(AlphaBetaApplier.SearchMode mode, int threads){
+        long total = 0;
+        for(String position : POSITIONS){
+            AlphaBetaApplier.destroy();
+
+            final AlphaBetaApplier applier = AlphaBetaApplier.getInstance()
+                    .setAlphaBetaListener(NO_OP_LISTENER)
+                    .setTimeBudget(Long.MAX_VALUE / 2)
+                    .setMaxDepth(SPEEDUP_DEPTH)
+                    .setSearchMode(mode)
+                    .setThreadCount(threads);
+
+            final long start = System.nanoTime();
+            applier.predict(parseBoard(position), null);
+            total += System.nanoTime() - start;
+        }
+        return total / 1_000_000;
     }
+
+    private static String speedup(long single, long parallel){
+        return String.format("%.2fx", (double)single / Math.max(1, parallel));
+    }
+
+    // games at a fixed depth from every red opening, each evaluator playing both colours
+    private static void compareEvaluators(BoardEvaluator one, BoardEvaluator two){
+        System.out.println("Eval speed: " + nanosPerEval(one) + "ns vs " + nanosPerEval(two) + "ns");
+
+        final int[] wins = playMatch(board -> searchMove(board, one), board -> searchMove(board, two));
+        System.out.println("Depth " + MATCH_DEPTH + " match: " + wins[0] + " - " + wins[1]);
+        Calculator.setEvaluator(Calculator.HEURISTIC);
+    }
+
+    // worst time per move of every level on the fixed positions, then each level against the next by node budget
+    // only, so the result doesn't depend on the machine
+    private static void compareDifficulties(){
+        final HomeScreen.Difficulty[] levels = HomeScreen.Difficulty.values();
+        for(HomeScreen.Difficulty level : levels){
+            long worst = 0;
+            for(String position : POSITIONS){
+                final long start = System.nanoTime();
+                searchMove(parseBoard(position), level.budget);
+                worst = Math.max(worst, (System.nanoTime() - start) / 1_000_000);
+            }
+            System.out.println(level + " (" + level.budget + "): worst " + worst + "ms per move");
+        }
+
+        for(int i=0; i+1<levels.length; i++){
+            final EngineBudget weaker = nodesOnly(levels[i].budget);
+            final EngineBudget stronger = nodesOnly(levels[i+1].budget);
+            final int[] wins = playMatch(board -> searchMove(board, weaker), board -> searchMove(board, stronger));
+            System.out.println(levels[i] + " vs " + levels[i+1] + ": " + wins[0] + " - " + wins[1]);
+        }
+    }
+
+    private static EngineBudget nodesOnly(EngineBudget budget){
+        return new EngineBudget(Long.MAX_VALUE / 2, budget.maxNodes, budget.maxPlayouts);
+    }
+
+    private interface Player{
+        int searchMove(BitBoard board); // as blue
+    }
+
+    // one game from every red opening with each side playing both colours, wins of one and two
+    private static int[] playMatch(Player one, Player two){
+        final int[] wins = new int[2];
+        for(int opening=0; opening<MATCH_N*MATCH_N; opening++){
+            if(playGame(one, two, opening) == CellState.MyColor.BLUE) wins[0]++; else wins[1]++;
+            if(playGame(two, one, opening) == CellState.MyColor.BLUE) wins[1]++; else wins[0]++;
+        }
+        return wins;
+    }
+
+    private static CellState.MyColor playGame(Player blue, Player red, int redOpening){
+        final BitBoard board = new BitBoard(MATCH_N);
+        board.makeMove(redOpening, CellState.MyColor.RED);
+
+        boolean blueToMove = true;
+        while (Calculator.getGameWinner(board) == null){
+            if(blueToMove){
+                board.makeMove(blue.searchMove(board), CellState.MyColor.BLUE);
+            }
+            else { // the engine only plays blue, so red searches the mirrored board
+                final int move = red.searchMove(mirror(board));
+                board.makeMove((move % MATCH_N) * MATCH_N + move / MATCH_N, CellState.MyColor.RED);
+            }
+            blueToMove = !blueToMove;
+        }
+        return Calculator.getGameWinner(board);
+    }
+
+    // transposed with colours swapped, red's edges become blue's
+    private static BitBoard mirror(BitBoard board){
+        final int N = board.getN();
+        final BitBoard mirrored = new BitBoard(N);
+        for(int x=0; x<N; x++){
+            for(int y=0; y<N; y++){
+                final CellState.MyColor color = board.get(x, y);
+                if(color == CellState.MyColor.BLANK) continue;
+                mirrored.makeMove(y*N + x, color == CellState.MyColor.RED ? CellState.MyColor.BLUE : CellState.MyColor.RED);
+            }
+        }
+        return mirrored;
+    }
+
+    private static int searchMove(BitBoard board, BoardEvaluator evaluator){
+        Calculator.setEvaluator(evaluator);
+        AlphaBetaApplier.destroy();
+        return searchMove(board, AlphaBetaApplier.getInstance().setTimeBudget(Long.MAX_VALUE / 2).setMaxDepth(MATCH_DEPTH));
+    }
+
+    private static int searchMove(BitBoard board, EngineBudget budget){
+        AlphaBetaApplier.destroy();
+        budget.apply();
+        return searchMove(board, AlphaBetaApplier.getInstance());
+    }
+
+    private static int searchMove(BitBoard board, AlphaBetaApplier applier){
+        final AtomicReference<Pair<Integer, Integer>> result = new AtomicReference<>();
+        applier
+                .setAlphaBetaListener(new AlphaBetaListener() {
+                    @Override
+                    public void onProgress(int progress) {}
+
+                    @Override
+                    public void onFinished(Pair<Integer, Integer> xy) { result.set(xy); }
+
+                    @Override
+                    public void onError(String message, boolean changeToGenetic) {}
+
+                    @Override
+                    public void onCellValueUpdated(int x, int y, int movVal) {}
+                })
+                .predict(board, null);
+
+        final Pair<Integer, Integer> xy = result.get();
+        return xy.getFirst() * board.getN() + xy.getSecond();
+    }
+
+    private static long nanosPerEval(BoardEvaluator evaluator){
+        final BitBoard[] boards = new BitBoard[POSITIONS.length];
+        for(int i=0; i<boards.length; i++) boards[i] = parseBoard(POSITIONS[i]);
+
+        long checksum = 0;
+        final int rounds = 2_000_000;
+        for(int i=0; i<rounds; i++) checksum += evaluator.evaluate(boards[i % boards.length]); // warm up
+
+        final long start = System.nanoTime();
+        for(int i=0; i<rounds; i++) checksum += evaluator.evaluate(boards[i % boards.length]);
+        final long nanos = (System.nanoTime() - start) / rounds;
+
+        if(checksum == Long.MIN_VALUE) System.out.println(); // keeps the calls alive
+        return nanos;
+    }
+
+    private static long countNodes(String position, boolean useMoveOrdering){
+        AlphaBetaApplier.destroy(); // fresh transposition table for every run
+
+        final AlphaBetaApplier applier = AlphaBetaApplier.getInstance()
+                .setAlphaBetaListener(NO_OP_LISTENER)
+                .setTimeBudget(Long.MAX_VALUE / 2)
+                .setMaxDepth(DEPTH)
+                .setMoveOrdering(useMoveOrdering);
+
+        applier.predict(parseBoard(position), null);
+        return applier.getLastNodeCount();
+    }
+
+    private static BitBoard parseBoard(String position){
+        return Helper.convertStringToBoard(position);
+    }
+
+    private static final AlphaBetaListener NO_OP_LISTENER = new AlphaBetaListener() {
+        @Override
+        public void onProgress(int progress) {}
+
+        @Override
+        public void onFinished(Pair<Integer, Integer> xy) {}
+
+        @Override
+        public void onError(String message, boolean changeToGenetic) {}
+
+        @Override
+        public void onCellValueUpdated(int x, int y, int movVal) {}
+    };
 }
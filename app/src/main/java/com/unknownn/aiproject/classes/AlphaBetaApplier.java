@@ -6,39 +6,43 @@ import static com.unknownn.aiproject.classes.Calculator.WIN;
 import com.unknownn.aiproject.listener.AlphaBetaListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import kotlin.Pair;
 
 public class AlphaBetaApplier {
 
-    private static final long TIME_THRESHOLD = 1_20_000L; // 20s
+    private static final long DEFAULT_TIME_BUDGET = 6_000L; // per move
+    private static final int NODE_CHECK_INTERVAL = 1024; // nodes a thread searches between two budget checks
 
     private int N;
     private int N_N;
-    private int DEPTH_LIMIT;
 
     private AlphaBetaListener alphaBetaListener = null;
 
-    private ExecutorService services = null;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private SearchMode searchMode = SearchMode.ROOT_SPLIT;
+    private final TranspositionTable transpositionTable = new TranspositionTable();
+    private final ThreadLocal<MoveOrderer> moveOrderers = new ThreadLocal<>();
+    private final LongAdder nodeCount = new LongAdder();
+    private volatile int searchId = 0;
+    private boolean useMoveOrdering = true;
+    private long lastNodeCount = 0;
+    private int lastCompletedDepth = -1;
+    private volatile int evaluatorVersion = Calculator.HEURISTIC.getVersion();
 
     private static AlphaBetaApplier instance = null;
     public static AlphaBetaApplier getInstance(){
         if(instance == null) {
             instance = new AlphaBetaApplier();
         }
-        instance.botProgressInt.set(0);
-        instance.stoppedByTLE = false;
         return instance;
     }
 
@@ -49,70 +53,273 @@ public class AlphaBetaApplier {
         return this;
     }
 
-    public static void destroy(){ instance = null; }
+    public AlphaBetaApplier setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+        return this;
+    }
 
-    private boolean stoppedByTLE = false;
-    private Timer timerTracker = null;
-    private void trackTimeTaken(){
-        final long startTime = System.currentTimeMillis();
-        final int[] percent = new int[]{botProgressInt.get()};
+    // stops after about this many nodes even if there is time left, the first iteration always finishes
+    public AlphaBetaApplier setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget;
+        return this;
+    }
 
-        timerTracker = new Timer();
-        timerTracker.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                final int curPercent = botProgressInt.get();
-                if( curPercent != percent[0]){ // progress running. Don't stop
-                    percent[0] = curPercent;
-                    return;
-                }
+    public AlphaBetaApplier setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
 
-                final long curTime = System.currentTimeMillis();
-                if(!isAlgoFixed && (curTime - startTime > TIME_THRESHOLD) ){ // enough. Stop now
-                    timerTracker.cancel();
-                    timerTracker = null;
-                    stoppedByTLE = true;
-                    alphaBetaListener.onError("Taking too much time. Switching to Genetic", true);
-                }
-            }
-        },4000,3000);
+    public AlphaBetaApplier setSearchMode(SearchMode searchMode) {
+        this.searchMode = searchMode;
+        return this;
+    }
+
+    public AlphaBetaApplier setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    // only for comparing node counts, ordering is on by default
+    public AlphaBetaApplier setMoveOrdering(boolean useMoveOrdering) {
+        this.useMoveOrdering = useMoveOrdering;
+        return this;
+    }
+
+    // nodes visited by the last predict call
+    public long getLastNodeCount() {
+        return lastNodeCount;
+    }
+
+    // depth of the last iteration the last predict call completed, -1 if none
+    public int getLastCompletedDepth() {
+        return lastCompletedDepth;
+    }
+
+    // the threads belong to the EngineSession and stay
+    public static void destroy(){
+        if(instance != null) instance.stopPondering();
+        instance = null;
+    }
+
+    private long timeBudget = DEFAULT_TIME_BUDGET;
+    private long nodeBudget = Long.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private long startTime = 0L;
+    private volatile long deadline = Long.MAX_VALUE;
+    private volatile boolean hasCompletedIteration = false;
+    private volatile boolean stopSearch = false;
+    private volatile CancellationToken token = new CancellationToken();
+
+    // the first iteration always finishes so that there is a move to return, unless the search is cancelled
+    private boolean isTimeUp(){
+        if(stopSearch) return true;
+        if(token.isCancelled()) stopSearch = true;
+        else if(hasCompletedIteration && (token.isMoveNowRequested() || System.currentTimeMillis() >= deadline)){
+            stopSearch = true;
+        }
+        return stopSearch;
     }
 
-    private final AtomicInteger botProgressInt = new AtomicInteger(Integer.MIN_VALUE);
     private volatile CellState lastClickedCell = null;
-    private boolean isAlgoFixed = false;
-    public void predict(final CellState.MyColor[][] fieldItOnly, int N, CellState lastClickedCell, boolean isAlgoFixed){
-        this.N = N;
+    public void predict(final CellState.MyColor[][] field, int N, CellState lastClickedCell){
+        predict(BitBoard.fromField(field, N), lastClickedCell);
+    }
+
+    // iterative deepening: depth 0,1,2... until the time budget runs out. The last completed iteration is used
+    public void predict(final BitBoard boardItOnly, CellState lastClickedCell){
+        waitForPondering();
+
+        final EngineSession session = EngineSession.getInstance();
+        final SearchResult result = search(boardItOnly, lastClickedCell, searchMode,
+                session.getSearchPool(threadCount), session.getToken());
+        if(result == null){
+            alphaBetaListener.onFinished(null);
+            return;
+        }
+
+        final int cell = getBestCell(result.best);
+        alphaBetaListener.onFinished(new Pair<>(cell / N, cell % N));
+    }
+
+    private SearchResult search(BitBoard boardItOnly, CellState lastClickedCell, SearchMode mode, ExecutorService pool,
+                                CancellationToken token){
+        this.N = boardItOnly.N;
         this.N_N = N*N;
         this.lastClickedCell = lastClickedCell;
-        this.isAlgoFixed = isAlgoFixed;
+        this.token = token;
+
+        startTime = System.currentTimeMillis();
+        deadline = startTime + timeBudget;
+        hasCompletedIteration = false;
+        stopSearch = false;
+        final BoardEvaluator evaluator = Calculator.getEvaluator();
+        if(evaluator.getVersion() != evaluatorVersion){ // stored scores are from another evaluator
+            transpositionTable.clear();
+            evaluatorVersion = evaluator.getVersion();
+        }
+        transpositionTable.newSearch();
+        nodeCount.reset();
+        searchId++;
 
-        if(services == null){
-            services = Executors.newFixedThreadPool(N_N);
+        final List<Integer> rootMoves = new ArrayList<>();
+        for(int i=0; i<N_N; i++){
+            if(boardItOnly.isBlank(i)) rootMoves.add(i);
         }
 
-        trackTimeTaken();
+        final boolean[] searched = new boolean[N_N]; // root positions that were searched, not loaded
+        final int lastDepth = Math.min(boardItOnly.getEmptyCount() - 1, maxDepth);
 
-        final AtomicInteger bestVal = new AtomicInteger(Integer.MIN_VALUE);
-        final AtomicInteger positionScore = new AtomicInteger(Integer.MIN_VALUE);
-        final AtomicReference<Pair<Integer,Integer>> cellToPlace = new AtomicReference<>(null);
+        final SearchResult result = (mode == SearchMode.LAZY_SMP)
+                ? searchLazySmp(pool, boardItOnly, rootMoves, lastDepth, searched)
+                : searchRootSplit(pool, boardItOnly, rootMoves, lastDepth, searched);
 
-        DEPTH_LIMIT = predictDepthLimit(fieldItOnly);
+        lastNodeCount = nodeCount.sum();
+        lastCompletedDepth = (result == null) ? -1 : result.depth;
 
-        final List<Future<?>> futures = new ArrayList<>();
+        if(result != null && saveQueue != null){
+            for(int i=0; i<N_N; i++){ // values below the best were searched with a raised alpha, only upper bounds
+                if(!searched[i]) continue;
 
-        for(int x = 0; x<N; x++){
-            for(int y = 0; y<N; y++){
-                if ( fieldItOnly[x][y] != CellState.MyColor.BLANK ){
-                    botProgressInt.incrementAndGet();
-                    int progress = (100 * botProgressInt.get()) / N_N;
-                    alphaBetaListener.onProgress(progress);
-                    continue;
-                }
+                final int bound = result.exact[i] ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+                saveQueue.offer(getRootMoveKey(boardItOnly, i),
+                        PositionStore.pack(result.values[i], result.depth, bound, evaluatorVersion, true));
+            }
+        }
+        return result;
+    }
+
+    private static final int PONDER_REPLIES = 4; // most likely user replies searched while the user thinks
+
+    private Future<?> ponderFuture = null;
+    private volatile boolean pondering = false;
+
+    public void ponder(final CellState.MyColor[][] field, int N){
+        ponder(BitBoard.fromField(field, N));
+    }
+
+    // call right after the bot moved. Searches the position after each likely user reply in the background,
+    // so the transposition table and the store are warm when the reply comes. Stopped by stopPondering or predict
+    public synchronized void ponder(final BitBoard boardAfterBotMove){
+        waitForPondering(); // only one search at a time, they share the fields above
+        if(boardAfterBotMove.getEmptyCount() < 2 || Calculator.getGameWinner(boardAfterBotMove) != null) return;
+
+        final EngineSession session = EngineSession.getInstance();
+        final CancellationToken ponderToken = session.beginPondering();
+        final ExecutorService ponderPool = session.getPonderPool(); // one thread drives, the other one searches
+
+        ponderFuture = ponderPool.submit(() -> {
+            final int[] replies = getLikelyReplies(boardAfterBotMove);
+            for(int reply : replies){
+                if(ponderToken.isCancelled()) break;
+
+                final BitBoard board = boardAfterBotMove.copy();
+                board.makeMove(reply, CellState.MyColor.RED);
+                if(Calculator.getGameWinner(board) != null) continue;
+
+                pondering = true;
+                search(board, null, SearchMode.ROOT_SPLIT, ponderPool, ponderToken);
+                pondering = false;
+            }
+        });
+    }
+
+    // does not wait, safe to call from the main thread the moment the user taps
+    public void stopPondering(){
+        EngineSession.getInstance().cancelPondering(); // isTimeUp picks it up at the next node
+    }
+
+    private synchronized void waitForPondering(){
+        stopPondering();
+        if(ponderFuture == null) return;
+
+        try{
+            ponderFuture.get();
+        }catch (InterruptedException | ExecutionException ignored){}
+        ponderFuture = null;
+        pondering = false;
+    }
+
+    // the reply the last search expected first, then the ones that look best for the user
+    private int[] getLikelyReplies(BitBoard board){
+        final int size = board.N * board.N;
+        final long entry = transpositionTable.probe(board.getHash()); // user to move
+        final int expected = (entry != 0) ? TranspositionTable.getMove(entry) : TranspositionTable.NO_MOVE;
+
+        final List<Integer> replies = new ArrayList<>();
+        final int[] scores = new int[size];
+        final BitBoard copy = board.copy();
+        for(int i=0; i<size; i++){
+            if(!copy.isBlank(i)) continue;
+
+            copy.makeMove(i, CellState.MyColor.RED);
+            scores[i] = (i == expected) ? Integer.MIN_VALUE : Calculator.getBoardScore(copy);
+            copy.unmakeMove(i);
+            replies.add(i);
+        }
+        replies.sort((one, two) -> Integer.compare(scores[one], scores[two])); // the user minimises
+
+        final int[] likely = new int[Math.min(PONDER_REPLIES, replies.size())];
+        for(int i=0; i<likely.length; i++) likely[i] = replies.get(i);
+        return likely;
+    }
+
+    // root moves are spread over the pool, all of them searching the same depth
+    private SearchResult searchRootSplit(ExecutorService pool, BitBoard root, List<Integer> rootMoves, int lastDepth,
+                                         boolean[] searched){
+        SearchResult completed = null;
+
+        for(int depthLimit = 0; depthLimit <= lastDepth; depthLimit++){
+            final int depth = depthLimit;
+            final AtomicLong rootBest = new AtomicLong(NO_BEST);
+            final int[] values = new int[N_N];
+            final boolean[] exact = new boolean[N_N];
+
+            final List<Future<?>> futures = new ArrayList<>();
+            for(int index : rootMoves){
+                futures.add( pool.submit(() -> {
+                    if(isTimeUp()) return;
+
+                    final BitBoard board = root.copy(); // one copy per root move, the rest is make/unmake
+                    board.trackConnectivity();
 
-                final Future<?> future = submitToThread(fieldItOnly, x,y, bestVal,positionScore, cellToPlace);
-                futures.add(future);
+                    final SearchContext context = new SearchContext(getMoveOrderer(), depth, rootBest);
+                    final int moveVal = searchRootMove(context, board, index, searched);
+                    if(stopSearch) return;
+
+                    updateRootBest(context, index, moveVal, values, exact);
+                    reportProgress();
+                }) );
+            }
+
+            for(Future<?> future : futures) {
+                try{
+                    future.get();
+                }catch (InterruptedException | ExecutionException ignored){}
             }
+
+            if(stopSearch) break; // incomplete iteration, keep the previous one
+
+            completed = new SearchResult(depthLimit, rootBest.get(), values, exact);
+            hasCompletedIteration = true;
+            onIterationCompleted(root, completed);
+
+            if(completed.isProven()) break; // no need to go deeper
+
+            // best moves of this iteration first, so the shared alpha is high early in the next one
+            rootMoves.sort((one, two) -> Integer.compare(values[two], values[one]));
+        }
+        return completed;
+    }
+
+    // every thread runs its own iterative deepening over all root moves, they only share the transposition table
+    private SearchResult searchLazySmp(ExecutorService pool, BitBoard root, List<Integer> rootMoves, int lastDepth,
+                                       boolean[] searched){
+        lazyResult.set(null);
+
+        final List<Future<?>> futures = new ArrayList<>();
+        for(int helper=0; helper<threadCount; helper++){
+            final int helperId = helper;
+            futures.add( pool.submit(() -> lazySmpThread(root, rootMoves, lastDepth, searched, helperId)) );
         }
 
         for(Future<?> future : futures) {
@@ -120,53 +327,205 @@ public class AlphaBetaApplier {
                 future.get();
             }catch (InterruptedException | ExecutionException ignored){}
         }
+        return lazyResult.get();
+    }
+
+    private final AtomicReference<SearchResult> lazyResult = new AtomicReference<>(null);
+
+    private void lazySmpThread(BitBoard root, List<Integer> sharedRootMoves, int lastDepth, boolean[] searched, int helperId){
+        final BitBoard board = root.copy();
+        board.trackConnectivity();
+        final MoveOrderer orderer = getMoveOrderer();
+
+        // helpers start with different moves and odd ones one ply deeper, so they fill different parts of the table
+        final List<Integer> rootMoves = new ArrayList<>(sharedRootMoves);
+        Collections.rotate(rootMoves, helperId);
+        int depthLimit = Math.min(helperId % 2, lastDepth);
+
+        while (depthLimit <= lastDepth){
+            final AtomicLong rootBest = new AtomicLong(NO_BEST);
+            final int[] values = new int[N_N];
+            final boolean[] exact = new boolean[N_N];
+            final SearchContext context = new SearchContext(orderer, depthLimit, rootBest);
+
+            for(int index : rootMoves){
+                if(isTimeUp()) return;
+
+                final int moveVal = searchRootMove(context, board, index, searched);
+                if(stopSearch) return;
+
+                updateRootBest(context, index, moveVal, values, exact);
+                if(helperId == 0) reportProgress();
+            }
+
+            final SearchResult result = new SearchResult(depthLimit, rootBest.get(), values, exact);
+            final SearchResult deepest = lazyResult.accumulateAndGet(result,
+                    (current, candidate) -> (current == null || candidate.depth > current.depth) ? candidate : current);
+
+            if(deepest == result){
+                hasCompletedIteration = true;
+                synchronized (lazyResult){ // a deeper thread may have finished meanwhile, it must not be overwritten
+                    if(lazyResult.get() == result) onIterationCompleted(root, result);
+                }
+            }
+
+            if(result.isProven() || depthLimit >= lastDepth){ // done, the other threads can stop
+                stopSearch = true;
+                return;
+            }
+
+            rootMoves.sort((one, two) -> Integer.compare(values[two], values[one]));
+            depthLimit = Math.max(depthLimit, deepest.depth) + 1;
+        }
+    }
+
+    private void onIterationCompleted(BitBoard root, SearchResult result){
+        if(pondering) return; // nothing to show, the user is still thinking
+
+        final int cell = getBestCell(result.best);
+        EngineSession.getInstance().publishBest(token, cell / N, cell % N, getBestScore(result.best));
+        for(int i=0; i<N_N; i++){
+            if(root.isBlank(i)) alphaBetaListener.onCellValueUpdated(i/N, i%N, result.values[i]);
+        }
+    }
+
+    private void checkNodeBudget(SearchContext context){
+        context.nodesSinceCheck = 0;
+        if(hasCompletedIteration && nodeCount.sum() >= nodeBudget) stopSearch = true;
+    }
 
-        if(stoppedByTLE) cellToPlace.set(null);
-        alphaBetaListener.onFinished(cellToPlace.get());
-        if(timerTracker != null) timerTracker.cancel();
+    private void reportProgress(){
+        if(pondering) return;
+        final long elapsed = System.currentTimeMillis() - startTime;
+        final long byTime = (100 * elapsed) / timeBudget;
+        final long byNodes = (long)((100.0 * nodeCount.sum()) / nodeBudget);
+        alphaBetaListener.onProgress( (int)Math.min(99, Math.max(byTime, byNodes)) );
     }
 
-    private int applyAlphaBeta(CellState.MyColor[][] field, int depth, final boolean isMax, int alpha, int beta){
-        if(stoppedByTLE) return 0;
+    private MoveOrderer getMoveOrderer(){
+        MoveOrderer orderer = moveOrderers.get();
+        if(orderer == null || orderer.N != N){
+            orderer = new MoveOrderer(N);
+            moveOrderers.set(orderer);
+        }
+        if(orderer.searchId != searchId){
+            orderer.searchId = searchId;
+            orderer.newSearch();
+        }
+        return orderer;
+    }
 
-        if( depth >= DEPTH_LIMIT ) {
-            return Calculator.getBoardScore(field,N);
+    private int applyAlphaBeta(SearchContext context, BitBoard board, int depth, final boolean isMax, int alpha, int beta,
+                               int lastMove){
+        if(isTimeUp()) return 0;
+        nodeCount.increment();
+        if(++context.nodesSinceCheck == NODE_CHECK_INTERVAL) checkNodeBudget(context);
+
+        if( depth >= context.depthLimit ) {
+            return Calculator.getBoardScore(board);
         }
 
-        final CellState.MyColor winner = Calculator.getGameWinner(field,N);
+        final CellState.MyColor winner = Calculator.getGameWinner(board);
         if(winner == CellState.MyColor.BLUE) return WIN;
         if(winner == CellState.MyColor.RED) return LOSS;
 
+        final int remainingDepth = context.depthLimit - depth;
+        final long key = board.getHash() ^ (isMax ? Zobrist.BLUE_TO_MOVE : 0);
+
+        final long entry = transpositionTable.probe(key);
+        final int ttMove = (entry != 0) ? TranspositionTable.getMove(entry) : TranspositionTable.NO_MOVE;
+        if(entry != 0 && TranspositionTable.getDepth(entry) >= remainingDepth){
+            final int score = TranspositionTable.getScore(entry);
+            final int flag = TranspositionTable.getFlag(entry);
+
+            if(flag == TranspositionTable.EXACT) return score;
+            if(flag == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+            else beta = Math.min(beta, score);
+
+            if(beta <= alpha) return score;
+        }
+
+        int alphaOrig = alpha;
+        final int betaOrig = beta;
+
         int best = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestMove = TranspositionTable.NO_MOVE;
+
+        final MoveOrderer orderer = context.orderer;
+        final int count = orderer.generate(board, depth, isMax, ttMove, lastMove, useMoveOrdering);
+        for(int n=0; n<count; n++){
+            final int i = orderer.pick(depth, n, count, useMoveOrdering);
+
+            if(depth == 0){ // reply to a root move, use what the other root moves have already proved
+                final int sharedAlpha = context.getRootAlpha();
+                if(sharedAlpha > alpha){
+                    alpha = sharedAlpha;
+                    alphaOrig = Math.max(alphaOrig, sharedAlpha);
+                    if(beta <= alpha){
+                        // beta came from a stored upper bound, nothing searched yet: fail low on it, no move
+                        if(n == 0) best = beta;
+                        break;
+                    }
+                }
+            }
 
-        mainLoop:
-        for(int x=0; x<N; x++){
-            for(int y=0; y<N; y++){
-                if( field[x][y] != CellState.MyColor.BLANK ) continue;
-
-                if(isMax){ // bot
-                    field[x][y] = CellState.MyColor.BLUE;
-                    int res = applyAlphaBeta(field,depth+1, false, alpha, beta);
-                    best = Math.max(best, res);
-                    alpha = Math.max( alpha, best);
-                    field[x][y] = CellState.MyColor.BLANK;
-                    if(beta <= alpha) break mainLoop;
+            if(isMax){ // bot
+                board.makeMove(i, CellState.MyColor.BLUE);
+                int res = applyAlphaBeta(context, board,depth+1, false, alpha, beta, i);
+                if(res > best){
+                    best = res;
+                    bestMove = i;
                 }
-                else{ // user
-                    field[x][y] = CellState.MyColor.RED;
-                    int res = applyAlphaBeta(field,depth+1, true,alpha,beta);
-                    best = Math.min(best, res);
-
-                    beta = Math.min( beta, best);
-                    field[x][y] = CellState.MyColor.BLANK;
-                    if(beta <= alpha) break mainLoop;
+                alpha = Math.max( alpha, best);
+                board.unmakeMove(i);
+            }
+            else{ // user
+                board.makeMove(i, CellState.MyColor.RED);
+                int res = applyAlphaBeta(context, board,depth+1, true,alpha,beta, i);
+                if(res < best){
+                    best = res;
+                    bestMove = i;
                 }
 
+                beta = Math.min( beta, best);
+                board.unmakeMove(i);
+            }
+
+            if(beta <= alpha){
+                if(useMoveOrdering) orderer.onCutoff(depth, i, isMax, remainingDepth, ttMove);
+                break;
             }
         }
+
+        if(stopSearch) return 0; // partial result, must not be stored
+
+        final int flag = (best <= alphaOrig) ? TranspositionTable.UPPER :
+                (best >= betaOrig) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        transpositionTable.store(key, remainingDepth, flag, best, bestMove);
+
         return best;
     }
 
+    // a reply search that started before another root move proved rootScore, so its alpha is still the lowest.
+    // Only for tests, on whatever the transposition table holds
+    int searchRootMoveLate(BitBoard root, int index, int depthLimit, int rootScore){
+        N = root.N;
+        N_N = N * N;
+        token = new CancellationToken();
+        stopSearch = false;
+
+        final BitBoard board = root.copy();
+        board.trackConnectivity();
+        board.makeMove(index, CellState.MyColor.BLUE);
+
+        final SearchContext context = new SearchContext(getMoveOrderer(), depthLimit, new AtomicLong(pack(rootScore, 0, 0)));
+        return applyAlphaBeta(context, board, 0, false, Integer.MIN_VALUE, Integer.MAX_VALUE, index);
+    }
+
+    TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
     private int calcScoreRelativeToLastPlacedCell(int x, int y){
 
         if(lastClickedCell == null) return 0;
@@ -189,87 +548,126 @@ public class AlphaBetaApplier {
         return 0;
     }
 
-    private Future<?> submitToThread(final CellState.MyColor[][] fieldItOnly, final int x, final int y,
-            final AtomicInteger bestVal, final AtomicInteger positionScore, AtomicReference<Pair<Integer,Integer>> cellToPlace){
-
-        return services.submit(()->{
-//            System.out.println("Depth limit: "+DEPTH_LIMIT);
-
-            final CellState.MyColor[][] field = new CellState.MyColor[N][N];
-            for(int i=0; i<N; i++){
-                System.arraycopy(fieldItOnly[i], 0, field[i], 0, N);
-            }
+    // best root move of an iteration packed as score(32) | positionScore(16) | cell(16), updated by CAS only
+    private static final long NO_BEST = pack(Integer.MIN_VALUE, 0, 0xFFFF);
 
-            field[x][y] = CellState.MyColor.BLUE;
+    private static long pack(int score, int positionScore, int cell){
+        return ((long)score << 32) | ((long)(positionScore & 0xFFFF) << 16) | (cell & 0xFFFF);
+    }
+    private static int getBestScore(long best){ return (int)(best >> 32); }
+    private static int getPositionScore(long best){ return (int)(best >>> 16) & 0xFFFF; }
+    private static int getBestCell(long best){ return (int)best & 0xFFFF; }
 
-            // checking if result is already available
-            final String strBoard = Helper.convertBoardToString(field,N);
-            Integer savedScore = boardMapScore.getOrDefault(strBoard,null);
+    private static long pickBetter(long current, long candidate){
+        final int curScore = getBestScore(current);
+        final int candScore = getBestScore(candidate);
+        if(candScore != curScore) return (candScore > curScore) ? candidate : current;
 
-            int moveVal;
-            if(savedScore == null){
-                moveVal = applyAlphaBeta(field,0, false, Integer.MIN_VALUE, Integer.MAX_VALUE);
-                if(savedListener != null) savedListener.onSaveRequest(strBoard, moveVal);
-            }
-            else{ moveVal = savedScore; }
+        final int curPosition = getPositionScore(current);
+        final int candPosition = getPositionScore(candidate);
+        if(candPosition != curPosition) return (candPosition > curPosition) ? candidate : current; // position is better
 
-            field[x][y] = CellState.MyColor.BLANK;
+        return (getBestCell(candidate) < getBestCell(current)) ? candidate : current; // same result on every run
+    }
 
-            if(stoppedByTLE) return;
+    private int searchRootMove(SearchContext context, BitBoard board, int index, boolean[] searched){
+        board.makeMove(index, CellState.MyColor.BLUE);
 
-//            System.out.println(moveVal);
+        // checking if result is already available
+        final long saved = (positionStore != null) ? positionStore.get(board.getHash()) : PositionStore.NO_ENTRY;
 
-            int score = calcScoreRelativeToLastPlacedCell(x,y);
+        int moveVal;
+        if(!isUsable(saved, context)){
+            moveVal = applyAlphaBeta(context, board,0, false, context.getRootAlpha(), Integer.MAX_VALUE, index);
+            searched[index] = true; // saved once the search finishes
+        }
+        else{ moveVal = PositionStore.getScore(saved); }
 
-            if (moveVal > bestVal.get()) {
-                cellToPlace.set( new Pair<>(x,y) );
-                bestVal.set( moveVal );
-                positionScore.set(score);
-            }
-            else if( moveVal == bestVal.get() && positionScore.get() < score ){ // current position is better
-                cellToPlace.set( new Pair<>(x,y) );
-                positionScore.set(score);
-            }
+        board.unmakeMove(index);
+        return moveVal;
+    }
 
-            botProgressInt.incrementAndGet();
-            alphaBetaListener.onProgress( (100 * botProgressInt.get()) / N_N );
+    private void updateRootBest(SearchContext context, int index, int moveVal, int[] values, boolean[] exact){
+        final long best = context.rootBest.accumulateAndGet(
+                pack(moveVal, calcScoreRelativeToLastPlacedCell(index / N, index % N), index),
+                AlphaBetaApplier::pickBetter
+        );
 
-            alphaBetaListener.onCellValueUpdated(x,y,moveVal);
-        });
+        // the window only ever had alpha below the best, so anything reaching the best is exact
+        values[index] = moveVal;
+        exact[index] = moveVal >= getBestScore(best);
     }
 
-    private int predictDepthLimit(CellState.MyColor[][] field){
-        int emptyCount = 0;
-        for(CellState.MyColor[] col : field){
-            for(CellState.MyColor item : col){
-                if(item == CellState.MyColor.BLANK) emptyCount++;
-            }
+    // what one search thread needs besides its board
+    private static final class SearchContext{
+        final MoveOrderer orderer;
+        final int depthLimit;
+        final AtomicLong rootBest; // of the iteration the thread is working on
+        int nodesSinceCheck = 0;
+
+        SearchContext(MoveOrderer orderer, int depthLimit, AtomicLong rootBest) {
+            this.orderer = orderer;
+            this.depthLimit = depthLimit;
+            this.rootBest = rootBest;
         }
 
-        //if( (N_N - emptyCount) < 3) return (N_N - emptyCount);
-
-        int emptyPercent = (100 * emptyCount) / N_N;
+        // alpha for replies to root moves. -1 so that moves equal to the best still get an exact score
+        int getRootAlpha(){
+            final int bestScore = getBestScore(rootBest.get());
+            return (bestScore == Integer.MIN_VALUE) ? Integer.MIN_VALUE : bestScore - 1;
+        }
+    }
 
-        if(emptyPercent > 80) return emptyCount/7; // early
+    // a completed iteration
+    private static final class SearchResult{
+        final int depth;
+        final long best;
+        final int[] values;
+        final boolean[] exact;
+
+        SearchResult(int depth, long best, int[] values, boolean[] exact) {
+            this.depth = depth;
+            this.best = best;
+            this.values = values;
+            this.exact = exact;
+        }
 
-        if(emptyPercent > 70) return emptyCount/6; // early
+        boolean isProven(){
+            final int score = getBestScore(best);
+            return score == WIN || score == LOSS;
+        }
+    }
 
-        if(emptyPercent > 50) return emptyCount/4; // medium
+    public enum SearchMode{
+        ROOT_SPLIT, // root moves spread over the threads, the best root score is shared as alpha
+        LAZY_SMP // every thread searches the whole tree, only the transposition table is shared
+    }
 
-        if(emptyPercent > 30) return emptyCount/2; // high
+    // a saved score replaces the search only if it came from a finished search at least as deep, with the same
+    // evaluator, and is either exact or an upper bound that can't beat the best move anyway
+    private boolean isUsable(long saved, SearchContext context){
+        if(saved == PositionStore.NO_ENTRY || !PositionStore.isCompleted(saved)) return false;
+        if(PositionStore.getEvaluatorVersion(saved) != evaluatorVersion) return false;
+        if(PositionStore.getDepth(saved) < context.depthLimit) return false;
 
-        return emptyCount; // critical
+        final int bound = PositionStore.getBound(saved);
+        return bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.UPPER && PositionStore.getScore(saved) <= context.getRootAlpha());
     }
 
-    private PreSavedListener savedListener = null;
-    private Map<String, Integer> boardMapScore = new HashMap<>();
-    public void setPreSavedListener(PreSavedListener savedListener, Map<String, Integer> boardMapScore){
-        this.savedListener = savedListener;
-        this.boardMapScore = boardMapScore;
+    // hash of the position after blue plays index, same as board.getHash() after makeMove
+    private static long getRootMoveKey(BitBoard root, int index){
+        return root.getHash() ^ Zobrist.cellKey(index, CellState.MyColor.BLUE);
     }
 
-    public interface PreSavedListener{
-        void onSaveRequest(String strBoard, int score);
+    private PositionStore positionStore = null;
+    private WriteBehindQueue saveQueue = null;
+
+    // scores are looked up in the store and saved through the queue
+    public AlphaBetaApplier setPositionStore(PositionStore positionStore, WriteBehindQueue saveQueue){
+        this.positionStore = positionStore;
+        this.saveQueue = saveQueue;
+        return this;
     }
 
 }
@@ -0,0 +1,121 @@
+package com.unknownn.aiproject.classes;
+
+// Packed board used by the engines. One bitset per colour, cell (x,y) is bit x*N + y
+public class BitBoard {
+
+    final int N;
+    final int N_N;
+    private final long[] blue;
+    private final long[] red;
+    private int emptyCount;
+    private long hash;
+    private HexUnionFind connectivity = null;
+
+    public BitBoard(int N) {
+        this.N = N;
+        this.N_N = N*N;
+
+        final int words = (N_N + 63) >>> 6;
+        blue = new long[words];
+        red = new long[words];
+        emptyCount = N_N;
+        hash = Zobrist.sizeKey(N);
+    }
+
+    public static BitBoard fromField(CellState.MyColor[][] field, int N){
+        final BitBoard board = new BitBoard(N);
+        for(int x=0; x<N; x++){
+            for(int y=0; y<N; y++){
+                if(field[x][y] != CellState.MyColor.BLANK) board.makeMove(x*N + y, field[x][y]);
+            }
+        }
+        return board;
+    }
+
+    public CellState.MyColor[][] toField(){
+        final CellState.MyColor[][] field = new CellState.MyColor[N][N];
+        for(int x=0; x<N; x++){
+            for(int y=0; y<N; y++){
+                field[x][y] = get(x*N + y);
+            }
+        }
+        return field;
+    }
+
+    public BitBoard copy(){
+        final BitBoard board = new BitBoard(N);
+        board.copyFrom(this);
+        return board;
+    }
+
+    // boards must be of the same size
+    public void copyFrom(BitBoard other){
+        System.arraycopy(other.blue, 0, blue, 0, blue.length);
+        System.arraycopy(other.red, 0, red, 0, red.length);
+        emptyCount = other.emptyCount;
+        hash = other.hash;
+        if(connectivity != null) connectivity.rebuild(this);
+    }
+
+    // keeps a union-find in sync with the stones so the winner check is cheap.
+    // Moves must then be unmade in the reverse order they were made
+    public void trackConnectivity(){
+        if(connectivity == null) connectivity = new HexUnionFind(N);
+        connectivity.rebuild(this);
+    }
+
+    public HexUnionFind getConnectivity() { return connectivity; }
+
+    public int getN() { return N; }
+
+    public int getEmptyCount() { return emptyCount; }
+
+    // zobrist key, updated on every make/unmake
+    public long getHash() { return hash; }
+
+    public boolean isBlank(int index){
+        final long mask = 1L << index;
+        return ((blue[index >>> 6] | red[index >>> 6]) & mask) == 0;
+    }
+
+    public boolean isBlue(int index){
+        return (blue[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isRed(int index){
+        return (red[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public CellState.MyColor get(int index){
+        if(isBlue(index)) return CellState.MyColor.BLUE;
+        if(isRed(index)) return CellState.MyColor.RED;
+        return CellState.MyColor.BLANK;
+    }
+
+    public CellState.MyColor get(int x, int y){
+        return get(x*N + y);
+    }
+
+    // cell must be blank
+    public void makeMove(int index, CellState.MyColor color){
+        final long mask = 1L << index;
+        if(color == CellState.MyColor.BLUE) blue[index >>> 6] |= mask;
+        else red[index >>> 6] |= mask;
+        emptyCount--;
+        hash ^= Zobrist.cellKey(index, color);
+
+        if(connectivity != null) connectivity.place(this, index, color == CellState.MyColor.BLUE);
+    }
+
+    public void unmakeMove(int index){
+        hash ^= Zobrist.cellKey(index, get(index));
+
+        final long mask = ~(1L << index);
+        blue[index >>> 6] &= mask;
+        red[index >>> 6] &= mask;
+        emptyCount++;
+
+        if(connectivity != null) connectivity.undo();
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.unknownn.aiproject.classes;
+
+// Static evaluation used at the leaves of the search. Positive is good for blue (bot), negative for red (user)
+public interface BoardEvaluator {
+
+    int evaluate(BitBoard board);
+
+    // must change whenever the scores of the evaluator change, stored scores of another version can't be reused
+    int getVersion();
+
+}
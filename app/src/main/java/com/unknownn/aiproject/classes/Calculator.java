@@ -1,325 +1,397 @@
 package com.unknownn.aiproject.classes;
 
-import static com.unknownn.aiproject.classes.CellState.MyColor.BLANK;
-import static com.unknownn.aiproject.classes.CellState.MyColor.BLUE;
-import static com.unknownn.aiproject.classes.CellState.MyColor.RED;
-
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-
-import kotlin.Pair;
+import java.util.Arrays;
 
+// Board evaluation. Everything runs on per thread scratch buffers, so a call doesn't allocate anything
 public class Calculator {
     public static final int WIN = 100, LOSS = -100;
-    public static final int NO_WIN = 100;
     private static final int PATH_LENGTH_WEIGHT = 10;
     private static final int MOBILITY_WEIGHT = 5;
     private static final int FREE_WEIGHT = 8;
-    private static final int[][] offsets = { {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1},{0, 1} };
-
-    public static int getBoardScore(CellState.MyColor[][] board, int N){
-
-        int blueScore = 0;
-        int redScore = 0;
-
-        final MyPair<PathScore,PathScore> pathScores = getExpectedLongestPathBlueRed(board, N);
 
-        blueScore += pathScores.blue.length*PATH_LENGTH_WEIGHT;
-        redScore += pathScores.red.length*PATH_LENGTH_WEIGHT;
+    // cells in front of the first/last row (blue) or column (red) of the longest path and their weights
+    private static final int[][] BLUE_TOP_OFFSETS = { {-1,0}, {-1,1} };
+    private static final int[][] BLUE_BOTTOM_OFFSETS = { {1,0}, {1,1} };
+    private static final int[] BLUE_WEIGHTS = {2,2};
+    private static final int[][] RED_LEFT_OFFSETS = { {-1, 0}, {1, -1}, {0, -1} };
+    private static final int[][] RED_RIGHT_OFFSETS = { {0,1}, {-1,1}, {1,0} };
+    private static final int[] RED_WEIGHTS = {2,2,1};
+
+    // longest path span, mobility and free cells at the ends of the path
+    public static final BoardEvaluator HEURISTIC = new BoardEvaluator() {
+        @Override
+        public int evaluate(BitBoard board) {
+            return fusedEvaluation ? getBoardScoreFused(board) : getBoardScoreSweeps(board);
+        }
 
-        final Pair<Integer,Integer> mobilities = calcMobilityBlueRed(board, N);
-        blueScore += mobilities.getFirst() * MOBILITY_WEIGHT;
-        redScore += mobilities.getSecond() * MOBILITY_WEIGHT;
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+    };
 
-        final MyPair<Integer,Integer> freeCount = calcFreeBlueRed(board, N, pathScores.blue, pathScores.red);
-        blueScore += freeCount.blue * FREE_WEIGHT;
-        redScore += freeCount.red * FREE_WEIGHT;
+    private static final ThreadLocal<Scratch> scratches = new ThreadLocal<>();
+    private static volatile boolean fusedEvaluation = true;
+    private static volatile BoardEvaluator evaluator = HEURISTIC;
 
-        return blueScore - redScore;
+    public static void setEvaluator(BoardEvaluator evaluator){
+        Calculator.evaluator = evaluator;
     }
 
+    public static BoardEvaluator getEvaluator() {
+        return evaluator;
+    }
 
-    public static CellState.MyColor getGameWinner(CellState.MyColor[][] field, int N){
-        final Pair<Integer,Integer> scores = getBoardScoreOld(field, N, true);
-
-        if(scores.getFirst() == N){ // Red won
-            return CellState.MyColor.RED;
-        }
+    // the fused evaluator gives the same score as the separate sweeps, this is kept for comparing them
+    public static void setFusedEvaluation(boolean fusedEvaluation){
+        Calculator.fusedEvaluation = fusedEvaluation;
+    }
 
-        if(scores.getSecond() == N){
-            return CellState.MyColor.BLUE;
+    private static Scratch getScratch(int N){
+        Scratch scratch = scratches.get();
+        if(scratch == null || scratch.N != N){ // only on the first call of the thread or when N changes
+            scratch = new Scratch(N);
+            scratches.set(scratch);
         }
-        return null;
+        return scratch;
     }
 
-    private static PathScore spreadThisPath(CellState.MyColor[][] board, int x, int y, boolean[][] visited, int N){
-        final PathScore pathScore = new PathScore(board[x][y]);
-        pathScore.reCalc(x,y);
-
-        final Queue<Pair<Integer,Integer>> queue = new LinkedList<>();
-        queue.add(new Pair<>(x,y));
-        visited[x][y] = true;
+    public static int getBoardScore(BitBoard board){
+        return evaluator.evaluate(board);
+    }
 
-        while (!queue.isEmpty()){
-            final Pair<Integer,Integer> pair = queue.poll();
+    // one pass over the board: mobility of every blank cell, bounds of every group and the free cells of
+    // a group as soon as it becomes the longest of its colour
+    static int getBoardScoreFused(BitBoard board){
+        final int N = board.N;
+        final Scratch scratch = getScratch(N);
+        final int[][] neighbours = scratch.neighbours;
+        final int[] queue = scratch.queue;
+        final int stamp = scratch.nextStamp();
+
+        int blueLength = -1, redLength = -1;
+        int blueMobility = 0, redMobility = 0;
+        int blueFreeCell = 0, redFreeCell = 0;
+
+        for(int i=0; i<board.N_N; i++){
+            if(board.isBlank(i)){
+                int blue = 0, red = 0;
+                for(int nb : neighbours[i]){
+                    if(board.isRed(nb)) red = 1;
+                    else if(board.isBlue(nb)) blue = 1;
 
-            assert pair != null;
-            final int oldX = pair.getFirst();
-            final int oldY = pair.getSecond();
+                    if(red + blue == 2) break;
+                }
+                blueMobility += blue;
+                redMobility += red;
+                continue;
+            }
 
-            for(int[] off : offsets){
-                final int newX = oldX + off[0];
-                final int newY = oldY + off[1];
+            if(scratch.visited[i] == stamp) continue;
 
-                if(newX < 0 || newX >= N || newY < 0 || newY >= N) continue;
-                if(visited[newX][newY]) continue;
-                if(board[newX][newY] != board[x][y]) continue;
+            final boolean blue = board.isBlue(i);
+            final int size = spreadThisPath(board, i, scratch, stamp);
 
-                visited[newX][newY] = true;
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for(int q=0; q<size; q++){
+                final int line = blue ? queue[q] / N : queue[q] % N;
+                min = Math.min(min, line);
+                max = Math.max(max, line);
+            }
+            final int length = max - min + 1;
 
-                pathScore.reCalc(newX, newY); // update automatically based on color
-                queue.add(new Pair<>(newX,newY));
+            if(blue && length > blueLength){
+                blueLength = length;
+                blueFreeCell =
+                        countFreeCellAtThese(board, scratch, BLUE_TOP_OFFSETS, BLUE_WEIGHTS, queue, size, true, min, length, Direction.TOP)
+                        + countFreeCellAtThese(board, scratch, BLUE_BOTTOM_OFFSETS, BLUE_WEIGHTS, queue, size, true, max, length, Direction.BOTTOM);
+            }
+            else if(!blue && length > redLength){
+                redLength = length;
+                redFreeCell =
+                        countFreeCellAtThese(board, scratch, RED_LEFT_OFFSETS, RED_WEIGHTS, queue, size, false, min, length, Direction.LEFT)
+                        + countFreeCellAtThese(board, scratch, RED_RIGHT_OFFSETS, RED_WEIGHTS, queue, size, false, max, length, Direction.RIGHT);
             }
         }
 
-        return pathScore;
+        final int blueScore = blueLength*PATH_LENGTH_WEIGHT + blueMobility*MOBILITY_WEIGHT + blueFreeCell*FREE_WEIGHT;
+        final int redScore = redLength*PATH_LENGTH_WEIGHT + redMobility*MOBILITY_WEIGHT + redFreeCell*FREE_WEIGHT;
+        return blueScore - redScore;
     }
 
-    private static MyPair<PathScore,PathScore> getExpectedLongestPathBlueRed(CellState.MyColor[][] board, int N){
-        final boolean[][] visited = new boolean[N][N];
+    // longest paths, mobility and free cells as separate sweeps
+    static int getBoardScoreSweeps(BitBoard board){
+        final int N = board.N;
+        final Scratch scratch = getScratch(N);
 
-        final PathScore bluePathScore = new PathScore(BLUE);
-        final PathScore redPathScore = new PathScore(RED);
+        int blueScore = 0;
+        int redScore = 0;
 
-        for(int x=0; x<N; x++){
-            for(int y=0; y<N; y++){
-                if(board[x][y] == BLANK || visited[x][y]) continue;
+        findLongestPaths(board, scratch);
+        final Path bluePath = scratch.bluePath;
+        final Path redPath = scratch.redPath;
+
+        blueScore += bluePath.length*PATH_LENGTH_WEIGHT;
+        redScore += redPath.length*PATH_LENGTH_WEIGHT;
+
+        blueScore += calcMobility(board, scratch, true) * MOBILITY_WEIGHT;
+        redScore += calcMobility(board, scratch, false) * MOBILITY_WEIGHT;
+
+        final int blueFreeCell =
+                countFreeCellAtThese(board, scratch, BLUE_TOP_OFFSETS, BLUE_WEIGHTS,
+                        bluePath.start, bluePath.startCount, true, bluePath.startLine, bluePath.length, Direction.TOP)
+                + countFreeCellAtThese(board, scratch, BLUE_BOTTOM_OFFSETS, BLUE_WEIGHTS,
+                        bluePath.end, bluePath.endCount, true, bluePath.endLine, bluePath.length, Direction.BOTTOM);
+
+        final int redFreeCell =
+                countFreeCellAtThese(board, scratch, RED_LEFT_OFFSETS, RED_WEIGHTS,
+                        redPath.start, redPath.startCount, false, redPath.startLine, redPath.length, Direction.LEFT)
+                + countFreeCellAtThese(board, scratch, RED_RIGHT_OFFSETS, RED_WEIGHTS,
+                        redPath.end, redPath.endCount, false, redPath.endLine, redPath.length, Direction.RIGHT);
+
+        blueScore += blueFreeCell * FREE_WEIGHT;
+        redScore += redFreeCell * FREE_WEIGHT;
+
+        return blueScore - redScore;
+    }
 
-                final PathScore pathScore = spreadThisPath(board, x,y,visited,N);
-                bluePathScore.update(pathScore);
-                redPathScore.update(pathScore);
-            }
-        }
 
-        return new MyPair<>(bluePathScore, redPathScore); // BLUE, RED
+    public static CellState.MyColor getGameWinner(CellState.MyColor[][] field, int N){
+        return getGameWinner(BitBoard.fromField(field, N));
     }
 
-    private static Pair<Integer,Integer> calcMobilityBlueRed(CellState.MyColor[][] board, int N){
+    public static CellState.MyColor getGameWinner(BitBoard board){
+        final HexUnionFind connectivity = board.getConnectivity();
+        if(connectivity != null) return connectivity.getWinner();
 
-        int blueMobility = 0;
-        int redMobility = 0;
+        final int N = board.N;
 
+        // left to right for Red
         for(int x=0; x<N; x++){
-            for(int y=0; y<N; y++){
-                if(board[x][y] != BLANK) continue;
+            if( board.isRed(x*N) && connectedToEndBy(board, N, x, 0, true) >= 0 ) return CellState.MyColor.RED;
+        }
 
-                final int[][] offsets = { {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1},{0, 1} };
+        // top to bottom for Blue
+        for(int y=0; y<N; y++){
+            if( board.isBlue(y) && connectedToEndBy(board, N, 0, y, false) >= 0 ) return CellState.MyColor.BLUE;
+        }
+        return null;
+    }
 
-                int blue = 0, red = 0;
-                for(int[] off : offsets){
-                    final int newX = x + off[0];
-                    final int newY = y + off[1];
+    // BFS over the same coloured group of start. Cells end up in scratch.queue in visiting order, returns the size
+    private static int spreadThisPath(BitBoard board, int start, Scratch scratch, int stamp){
+        final int[][] neighbours = scratch.neighbours;
+        final int[] queue = scratch.queue;
+        final int[] visited = scratch.visited;
+        final boolean blue = board.isBlue(start);
 
-                    if(newX < 0 || newX >= N || newY < 0 || newY >= N) continue;
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start] = stamp;
 
-                    if(board[newX][newY] == RED) red = 1;
-                    else if(board[newX][newY] == BLUE) blue = 1;
+        while (head < tail){
+            final int cell = queue[head++];
 
-                    if(red + blue == 2) break;
-                }
+            for(int nb : neighbours[cell]){
+                if(visited[nb] == stamp) continue;
+                if( !(blue ? board.isBlue(nb) : board.isRed(nb)) ) continue;
 
-                blueMobility += blue;
-                redMobility += red;
+                visited[nb] = stamp;
+                queue[tail++] = nb;
             }
         }
+        return tail;
+    }
+
+    // longest group of each colour, the first one in x,y order wins a tie
+    private static void findLongestPaths(BitBoard board, Scratch scratch){
+        scratch.bluePath.reset();
+        scratch.redPath.reset();
 
-        // the less, the better
-        final int max = Math.max(blueMobility, redMobility);
-        return new Pair<>(blueMobility, redMobility); // the more, the better since subtracted
+        final int stamp = scratch.nextStamp();
+        for(int i=0; i<board.N_N; i++){
+            if(board.isBlank(i) || scratch.visited[i] == stamp) continue;
+
+            final int size = spreadThisPath(board, i, scratch, stamp);
+            if(board.isBlue(i)) scratch.bluePath.update(scratch.queue, size, board.N, true);
+            else scratch.redPath.update(scratch.queue, size, board.N, false);
+        }
     }
 
-    private static MyPair<Integer,Integer> calcFreeBlueRed(CellState.MyColor[][] board, int N, PathScore bluePathScore, PathScore redPathScore) {
-
-        final int blueTopFreeCell = countFreeCellAtThese(board, N,
-                new int[][]{ {-1,0}, {-1,1} },
-                new int[]{2,2},
-                bluePathScore.getPointsAtStart(), bluePathScore.length,
-                Direction.TOP
-        );
-
-        final int blueBottomFreeCell = countFreeCellAtThese(board, N,
-                new int[][]{ {1,0}, {1,1} },
-                new int[]{2,2},
-                bluePathScore.getPointsAtEnd(), bluePathScore.length,
-                Direction.BOTTOM
-        );
-
-        final int redLeftFreeCell = countFreeCellAtThese( board, N,
-                new int[][]{ {-1, 0}, {1, -1}, {0, -1} },
-                new int[]{2,2,1},
-                redPathScore.getPointsAtStart(), redPathScore.length,
-                Direction.LEFT
-        );
-
-        final int redRightFreeCell = countFreeCellAtThese(board, N,
-                new int[][]{ {0,1}, {-1,1}, {1,0} },
-                new int[]{2,2,1},
-                redPathScore.getPointsAtEnd(),redPathScore.length,
-                Direction.RIGHT
-        );
-
-        final int blueFreeCell = blueTopFreeCell + blueBottomFreeCell;
-        final int redFreeCell = redLeftFreeCell + redRightFreeCell;
-        System.out.println(blueFreeCell+" , "+redFreeCell);
-        return new MyPair<>(blueFreeCell, redFreeCell);
+    // number of blank cells next to at least one stone of the colour
+    private static int calcMobility(BitBoard board, Scratch scratch, boolean blue){
+        final int[][] neighbours = scratch.neighbours;
+
+        int mobility = 0;
+        for(int i=0; i<board.N_N; i++){
+            if(!board.isBlank(i)) continue;
+
+            for(int nb : neighbours[i]){
+                if(blue ? board.isBlue(nb) : board.isRed(nb)){
+                    mobility++;
+                    break;
+                }
+            }
+        }
+        return mobility; // the more, the better since subtracted
     }
 
-    private static int countFreeCellAtThese(CellState.MyColor[][] board, final int N,
+    // only the cells of the given row (blue) or column (red) are used as points, in the order they are stored
+    private static int countFreeCellAtThese(BitBoard board, Scratch scratch,
                                             final int[][] offsets, final int[] weights,
-                                            final List<PathScore.Point> points, int len, Direction direction){
+                                            final int[] cells, int noOfCells, boolean blue, int line,
+                                            int len, Direction direction){
+        final int N = board.N;
+        if(noOfCells == 0) return 0;
 
-        final boolean[][] visited = new boolean[N][N];
-        int count = 0;
-        for (PathScore.Point pt : points) {
+        if( (direction == Direction.LEFT || direction == Direction.TOP) ? line == 0 : line == N-1 ) {
+            return (N-1)*len; // no need to check
+        }
 
-            if( (direction == Direction.LEFT && pt.y == 0) || (direction == Direction.RIGHT && pt.y == N-1) ||
-                    (direction == Direction.TOP && pt.x == 0) || (direction == Direction.BOTTOM && pt.x == N-1) ) {
-                return (N-1)*len;//points.size() * 2; // no need to check
-            }
+        final int[] visited = scratch.edgeVisited;
+        final int stamp = scratch.nextEdgeStamp();
 
-            for(int i=0; i<offsets.length; i++){
-                final int[] off = offsets[i];
+        int count = 0;
+        for(int p=0; p<noOfCells; p++) {
+            final int x = cells[p] / N;
+            final int y = cells[p] % N;
+            if( (blue ? x : y) != line ) continue;
 
-                final int newX = pt.x + off[0];
-                final int newY = pt.y + off[1];
+            for(int i=0; i<offsets.length; i++){
+                final int newX = x + offsets[i][0];
+                final int newY = y + offsets[i][1];
 
                 if(newX < 0 || newX >= N || newY < 0 || newY >= N) {
                     count += weights[i]; // Giving weight even if cell is invalid
                     continue;
                 }
-                if(visited[newX][newY]) continue;
 
-                visited[newX][newY] = true;
+                final int index = newX*N + newY;
+                if(visited[index] == stamp) continue;
 
-                if(board[newX][newY] == CellState.MyColor.BLANK) count += weights[i];
+                visited[index] = stamp;
+
+                if(board.isBlank(index)) count += weights[i];
             }
         }
         return count;
     }
 
-    private static Pair<Integer,Integer> getBoardScoreOld(CellState.MyColor[][] field, int N, boolean noOptimization){
-        // left to right for Red
-        int redNegScore = -NO_WIN;
-        int redPosScore = NO_WIN;
-        for(int x=0; x<N; x++){
-            if( field[x][0] != CellState.MyColor.RED ) continue;
-            final int score = connectedToEndBy(field,N,x,0, true);
+    /*
+     0: the stone at (x,y) is connected to the opposite end (right when horizontal, bottom otherwise)
+     -N: not connected yet
+     */
+    public static int connectedToEndBy(BitBoard field, int N, int x, int y, boolean horizontal){
+        final int start = x*N + y;
+        if(field.isBlank(start)) return 0;
 
-            if(score < 0){ // need |score| cells move to win
-                redNegScore = Math.max(redNegScore, score);
-            }
-            else { // won with path length score
-                redPosScore = Math.min(redPosScore, score);
-            }
+        final Scratch scratch = getScratch(N);
+        final int[][] neighbours = scratch.neighbours;
+        final int[] queue = scratch.queue;
+        final int[] visited = scratch.visited;
+        final int stamp = scratch.nextStamp();
+        final boolean blue = field.isBlue(start);
 
-            if(noOptimization && redPosScore != NO_WIN){ // no optimization is requested and red won
-                 return new Pair<>(N,0); // red won, no optimization is performed
-            }
-            if(redPosScore == N) break;
-        }
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        visited[start] = stamp;
 
-        // top to bottom for Blue
-        int blueNegScore = -NO_WIN;
-        int bluePosScore = NO_WIN;
-        for(int y=0; y<N; y++){
-            if( field[0][y] != CellState.MyColor.BLUE ) continue;
+        while (head < tail){
+            final int cell = queue[head++];
 
-            final int score = connectedToEndBy(field, N, 0, y, false);
-            if(score < 0){ // need |score| cells move to win
-                blueNegScore = Math.max(blueNegScore, score);
-            }
-            else { // won with path length `score`
-                bluePosScore = Math.min(bluePosScore, score);
-            }
+            for(int nb : neighbours[cell]){
+                if(visited[nb] == stamp) continue;
+                if( !(blue ? field.isBlue(nb) : field.isRed(nb)) ) continue;
 
-            if(noOptimization && bluePosScore != NO_WIN){ // no optimization is requested and blue won
-                return new Pair<>(0,N); // blue won, no optimization is performed
-            }
+                if( (horizontal && nb % N == N-1) || (!horizontal && nb / N == N-1) ) return 0; // someone wins
 
-            if(bluePosScore == N) break;
+                visited[nb] = stamp;
+                queue[tail++] = nb;
+            }
         }
-
-        // NO_WIN - posScore is used to give lower pos value, more score
-        return new Pair<>(NO_WIN - redPosScore, NO_WIN - bluePosScore); // use negative score here somehow.
-        // red score, blue score -> the more the better
-        // pos score -> less better
-        // blue score -> less better
+        return -N;
     }
 
-    /*
-     ex:
-     5: can win by using 5 cells
-     -3: winning path requires at least 3 cell to win
-     negative part is not done yet
-     */
-
-    public static int connectedToEndBy(CellState.MyColor[][] field, int N, int x, int y, boolean horizontal){
-        if(field[x][y] == BLANK) return 0;
-
-        final Queue<Pair<Integer,Integer>> queue = new LinkedList<>();
-
-        queue.add( new Pair<>(x,y) );
-        final boolean[][] visited = new boolean[N][N];
-        visited[x][y] = true;
-
-        int score = N*N*2;
-        final Map<Integer,Integer> parentMap = new HashMap<>();
-        parentMap.put(x*N + y, -1);
-
-        while ( !queue.isEmpty() ){
-            final Pair<Integer,Integer> pair = queue.poll();
-            if(pair == null) continue;
-
-            final int[][] offsets = { {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1},{0, 1} };
+    private enum Direction{ LEFT, RIGHT, TOP, BOTTOM }
 
-            for(int[] offset : offsets){
-                final int row = pair.getFirst() + offset[0];
-                final int col = pair.getSecond() + offset[1];
+    // longest group of one colour: its length along the winning direction and its cells on the first and last line
+    private static final class Path{
+        int length;
+        final int[] start;
+        final int[] end;
+        int startCount, endCount;
+        int startLine, endLine;
+
+        Path(int N) {
+            start = new int[N];
+            end = new int[N];
+        }
 
-                if(row < 0 || row >= N || col < 0 || col >= N) continue;
+        void reset(){
+            length = -1;
+            startCount = endCount = 0;
+        }
 
-                if( field[pair.getFirst()][pair.getSecond()] == field[row][col] && !visited[row][col] ){
+        // replaces the path only if the group is longer, points keep the visiting order of the group
+        void update(int[] cells, int size, int N, boolean blue){
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for(int i=0; i<size; i++){
+                final int line = blue ? cells[i] / N : cells[i] % N;
+                min = Math.min(min, line);
+                max = Math.max(max, line);
+            }
 
-                    parentMap.put( pair.getFirst() * N + pair.getSecond(), row*N+col );
+            final int newLength = max - min + 1;
+            if(newLength <= length) return;
+
+            length = newLength;
+            startLine = min;
+            endLine = max;
+            startCount = endCount = 0;
+            for(int i=0; i<size; i++){
+                final int line = blue ? cells[i] / N : cells[i] % N;
+                if(line == min) start[startCount++] = cells[i];
+                if(line == max) end[endCount++] = cells[i];
+            }
+        }
+    }
 
-                    if( (horizontal && (col == N-1)) || (!horizontal && row == N-1) ) { // someone wins
-                        int pathLength = 0;
+    private static final class Scratch{
+        final int N;
+        final int[][] neighbours;
+        final int[] queue;
+        final int[] visited; // visited[i] == stamp means visited in the current pass
+        int stamp = 0;
+        final int[] edgeVisited; // same for the free cell counts, they run in the middle of a pass
+        int edgeStamp = 0;
+        final Path bluePath;
+        final Path redPath;
+
+        Scratch(int N) {
+            this.N = N;
+            neighbours = HexGrid.neighbours(N);
+            queue = new int[N*N];
+            visited = new int[N*N];
+            edgeVisited = new int[N*N];
+            bluePath = new Path(N);
+            redPath = new Path(N);
+        }
 
-                        int r = row, c = col;
-                        Integer val = parentMap.getOrDefault(r*N + c,-1);
-                        while (val != null && val != -1){
-                            r = val/N;
-                            c = val%N;
-                            val = parentMap.getOrDefault(r*N + c,-1);
-                            pathLength++;
-                        }
-                        score = Math.min(score, pathLength);
-                        if(score >= N && score <= (N+1)) return score; // won with 5 or 6
-                    }
-//                    if( !horizontal && (col == N-1) ) return false; // connected
-                    queue.add( new Pair<>(row,col) );
+        int nextStamp(){
+            if(++stamp == 0){ // wrapped around, old marks could collide
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
 
-                    visited[row][col] = true;
-                }
+        int nextEdgeStamp(){
+            if(++edgeStamp == 0){
+                Arrays.fill(edgeVisited, 0);
+                edgeStamp = 1;
             }
+            return edgeStamp;
         }
-        if(score < N*N) return score;
-        return -N; // current now, assuming N cells away from winning. |-N| will be lower
     }
 
-    private enum Direction{ LEFT, RIGHT, TOP, BOTTOM }
-
 }
@@ -0,0 +1,32 @@
+package com.unknownn.aiproject.classes;
+
+// Handed out by the EngineSession when a search starts and checked by every search loop.
+// Cancelled means drop the result, move now means answer with the best move so far. Neither can be undone,
+// the next search gets a new token
+public final class CancellationToken {
+
+    private volatile boolean cancelled = false;
+    private volatile boolean moveNow = false;
+
+    public void cancel(){
+        cancelled = true;
+    }
+
+    public void requestMoveNow(){
+        moveNow = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isMoveNowRequested() {
+        return moveNow;
+    }
+
+    // either way the search has to stop
+    public boolean isStopRequested() {
+        return cancelled || moveNow;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.unknownn.aiproject.classes;
+
+import static com.unknownn.aiproject.classes.Calculator.WIN;
+
+import java.util.Arrays;
+
+// Hex specific evaluation: how many more cells each player needs to connect its edges.
+// Own stones cost 0, blank cells 1 and opponent stones block, so a 0-1 BFS finds the distance
+public class DistanceEvaluator implements BoardEvaluator {
+
+    private static final int VERSION = 2;
+    private static final int DISTANCE_WEIGHT = 10;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int BLOCKED = -1;
+
+    private static DistanceEvaluator instance = null;
+    public static DistanceEvaluator getInstance(){
+        if(instance == null){
+            instance = new DistanceEvaluator();
+        }
+        return instance;
+    }
+
+    private DistanceEvaluator() {}
+
+    private final ThreadLocal<Scratch> scratches = new ThreadLocal<>();
+
+    private Scratch getScratch(int N){
+        Scratch scratch = scratches.get();
+        if(scratch == null || scratch.N != N){
+            scratch = new Scratch(N);
+            scratches.set(scratch);
+        }
+        return scratch;
+    }
+
+    @Override
+    public int evaluate(BitBoard board) {
+        final Scratch scratch = getScratch(board.N);
+
+        final int[] blueCost = scratch.blueCost;
+        final int[] redCost = scratch.redCost;
+        for(int i=0; i<board.N_N; i++){
+            if(board.isBlank(i)){
+                blueCost[i] = redCost[i] = 1;
+            }
+            else if(board.isBlue(i)){
+                blueCost[i] = 0;
+                redCost[i] = BLOCKED;
+            }
+            else{
+                blueCost[i] = BLOCKED;
+                redCost[i] = 0;
+            }
+        }
+
+        final int blueDistance = distanceToConnect(board, scratch, true);
+        final int redDistance = distanceToConnect(board, scratch, false);
+
+        // a blocked player has lost, the search finds the actual win. Never reach WIN/LOSS from here
+        final int score = (redDistance - blueDistance) * DISTANCE_WEIGHT;
+        return Math.max(-(WIN - 1), Math.min(WIN - 1, score));
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    // blank cells still needed: blue from top (x = 0) to bottom (x = N-1), red from left (y = 0) to right (y = N-1)
+    private static int distanceToConnect(BitBoard board, Scratch scratch, boolean blue){
+        final int N = board.N;
+        final int[][] neighbours = scratch.neighbours;
+        final int[] costs = blue ? scratch.blueCost : scratch.redCost;
+        final int[] dist = scratch.dist;
+        final int[] deque = scratch.deque;
+        final int mask = deque.length - 1;
+        Arrays.fill(dist, UNREACHABLE);
+
+        int head = 0, size = 0;
+
+        // every cell of the starting edge, the ones that are free are at the back
+        for(int i=0; i<N; i++){
+            final int cell = blue ? i : i*N;
+            final int cost = costs[cell];
+            if(cost == BLOCKED) continue;
+
+            dist[cell] = cost;
+            if(cost == 0){
+                head = (head - 1) & mask;
+                deque[head] = cell;
+            }
+            else deque[(head + size) & mask] = cell;
+            size++;
+        }
+
+        while (size > 0){
+            final int cell = deque[head];
+            head = (head + 1) & mask;
+            size--;
+
+            final int d = dist[cell];
+            if( (blue ? cell / N : cell % N) == N-1 ) return d; // first one out of the deque is the nearest
+
+            for(int nb : neighbours[cell]){
+                final int cost = costs[nb];
+                if(cost == BLOCKED || d + cost >= dist[nb]) continue;
+
+                dist[nb] = d + cost;
+                if(cost == 0){
+                    head = (head - 1) & mask;
+                    deque[head] = nb;
+                }
+                else deque[(head + size) & mask] = nb;
+                size++;
+            }
+        }
+        return board.N_N + 1; // blocked
+    }
+
+    private static final class Scratch{
+        final int N;
+        final int[][] neighbours;
+        final int[] blueCost, redCost; // 0 for own stone, 1 for blank, BLOCKED for the opponent's stone
+        final int[] dist;
+        final int[] deque; // ring buffer of a power of two size, a cell is pushed at most twice (as blank, then improved)
+
+        Scratch(int N) {
+            this.N = N;
+            neighbours = HexGrid.neighbours(N);
+            blueCost = new int[N*N];
+            redCost = new int[N*N];
+            dist = new int[N*N];
+            deque = new int[Integer.highestOneBit(2*N*N - 1) << 1];
+        }
+    }
+
+}
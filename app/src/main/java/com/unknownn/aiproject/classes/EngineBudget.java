@@ -0,0 +1,30 @@
+package com.unknownn.aiproject.classes;
+
+// How much an engine may spend on one move. Whichever limit is reached first ends the search, the time limit
+// bounds the response on every device and the node / playout limit keeps the strength the same on fast ones
+public final class EngineBudget {
+
+    public final long maxMillis;
+    public final long maxNodes; // alpha-beta
+    public final int maxPlayouts; // MCTS
+
+    public EngineBudget(long maxMillis, long maxNodes, int maxPlayouts) {
+        this.maxMillis = maxMillis;
+        this.maxNodes = maxNodes;
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    // to all engines, call it again after they were destroyed
+    public void apply(){
+        AlphaBetaApplier.getInstance().setTimeBudget(maxMillis).setNodeBudget(maxNodes);
+        MctsApplier.getInstance().setTimeBudget(maxMillis).setPlayoutBudget(maxPlayouts);
+        GeneticApplier.getInstance().setTimeBudget(maxMillis)
+                .setIslandCount(Runtime.getRuntime().availableProcessors()); // one island per core
+    }
+
+    @Override
+    public String toString() {
+        return maxMillis + "ms, " + maxNodes + " nodes, " + maxPlayouts + " playouts";
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.unknownn.aiproject.classes;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+import kotlin.Pair;
+
+// Threads and cancellation shared by all engines. The pools outlive the engines, which are recreated for every
+// game, and are only shut down by destroy when the activity goes away
+public class EngineSession {
+
+    private ExecutorService searchPool = null;
+    private int poolSize = 0;
+    private ForkJoinPool evaluationPool = null;
+    private final ExecutorService ponderPool = Executors.newFixedThreadPool(2, threadFactory("ponder", Thread.MIN_PRIORITY));
+
+    private CancellationToken token = new CancellationToken();
+    private CancellationToken ponderToken = new CancellationToken();
+
+    private Pair<Integer,Integer> bestMove = null; // published by the running search
+    private int bestScore = 0;
+
+    private static EngineSession instance = null;
+    public static synchronized EngineSession getInstance(){
+        if(instance == null) {
+            instance = new EngineSession();
+        }
+        return instance;
+    }
+
+    // cancels everything and stops the threads
+    public static synchronized void destroy(){
+        if(instance == null) return;
+
+        instance.cancel();
+        if(instance.searchPool != null) instance.searchPool.shutdownNow();
+        if(instance.evaluationPool != null) instance.evaluationPool.shutdownNow();
+        instance.ponderPool.shutdownNow();
+        instance = null;
+    }
+
+    private EngineSession() {}
+
+    // for the search about to start, the previous one and any pondering are cancelled
+    public synchronized CancellationToken begin(){
+        cancel();
+        token = new CancellationToken();
+        bestMove = null;
+        return token;
+    }
+
+    // of the last begin, engines check it without being handed one
+    public synchronized CancellationToken getToken() {
+        return token;
+    }
+
+    public synchronized CancellationToken beginPondering(){
+        ponderToken.cancel();
+        ponderToken = new CancellationToken();
+        return ponderToken;
+    }
+
+    public synchronized void cancelPondering(){
+        ponderToken.cancel();
+    }
+
+    // the running search finishes right away with its best move so far, which is also returned.
+    // null if it has not published one yet, it still finishes with one
+    public synchronized Pair<Integer,Integer> moveNow(){
+        token.requestMoveNow();
+        return bestMove;
+    }
+
+    // engines call it whenever their best move changes, same coordinates as their onFinished
+    public synchronized void publishBest(CancellationToken from, int x, int y, int score){
+        if(from != token) return; // an old search or pondering
+        bestMove = new Pair<>(x, y);
+        bestScore = score;
+    }
+
+    public synchronized Pair<Integer,Integer> getBestMove() {
+        return bestMove;
+    }
+
+    // in the engine's own unit, see publishBest callers
+    public synchronized int getBestScore() {
+        return bestScore;
+    }
+
+    // the running search stops within a few milliseconds
+    public synchronized void cancel(){
+        token.cancel();
+        ponderToken.cancel();
+    }
+
+    // kept as long as the same size is asked for
+    public synchronized ExecutorService getSearchPool(int threads){
+        if(searchPool == null || poolSize != threads){
+            if(searchPool != null) searchPool.shutdown(); // lets a cancelled search wind down
+            searchPool = Executors.newFixedThreadPool(threads, threadFactory("search", Thread.NORM_PRIORITY));
+            poolSize = threads;
+        }
+        return searchPool;
+    }
+
+    // for the genetic algorithm, kept as long as the same parallelism is asked for
+    public synchronized ForkJoinPool getEvaluationPool(int parallelism){
+        if(evaluationPool == null || evaluationPool.getParallelism() != parallelism){
+            if(evaluationPool != null) evaluationPool.shutdown();
+            evaluationPool = new ForkJoinPool(parallelism);
+        }
+        return evaluationPool;
+    }
+
+    // one thread drives the pondering, the other one searches
+    public ExecutorService getPonderPool() {
+        return ponderPool;
+    }
+
+    private static ThreadFactory threadFactory(String name, int priority){
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setPriority(priority);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
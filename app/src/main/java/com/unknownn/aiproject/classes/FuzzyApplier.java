@@ -119,7 +119,7 @@ public class FuzzyApplier {
         // todo For testing only
 //        return PredictionAlgo.ALPHA_BETA_PRUNING;
         if(percent < 50) return PredictionAlgo.ALPHA_BETA_PRUNING;
-        return PredictionAlgo.GENETIC_ALGO;
+        return PredictionAlgo.MCTS; // the open board side, EASY keeps the genetic algo for it
     }
 
     public PredictionAlgo predictAlgo(int N_N, int emptyCells, int prevTimeTaken){
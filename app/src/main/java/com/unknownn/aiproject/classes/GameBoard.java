@@ -21,9 +21,11 @@ import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.unknownn.aiproject.enums.GeneticStopReason;
 import com.unknownn.aiproject.enums.PredictionAlgo;
 import com.unknownn.aiproject.listener.AlphaBetaListener;
 import com.unknownn.aiproject.listener.GeneticListener;
+import com.unknownn.aiproject.listener.MctsListener;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -208,7 +210,7 @@ public class GameBoard extends View {
                 if(boardListener != null) boardListener.showWhoseMove(redTurn);
                 isTheFirstMove = false;
                 invalidate();
-                checkForGameOver(true);
+                startPredictingIfNotOver();
                 return;
             }
 
@@ -216,6 +218,7 @@ public class GameBoard extends View {
             return;
         }
 
+        AlphaBetaApplier.getInstance().stopPondering(); // the search for this move starts soon
         clickedCell.setMyColor( redTurn ? CellState.MyColor.RED : CellState.MyColor.BLUE );
         if(boardListener != null) {
             processForAnimation(clickedCell, true);
@@ -229,6 +232,38 @@ public class GameBoard extends View {
         }
 //        invalidate();
 //        checkForGameOver(true);
+        userMoveAnimating = (boardListener != null);
+        startPredictingIfNotOver(); // runs alongside the animation
+    }
+
+    // the bot's move waits for whichever ends last, the search or the animation of the user's move
+    private boolean userMoveAnimating = false;
+    private Pair<Integer,Integer> pendingBotMove = null;
+
+    private void startPredictingIfNotOver(){
+        if(Calculator.getGameWinner(getCurrentBoard(), N) == null) startPredicting(null);
+    }
+
+    private void onUserMoveShown(){
+        userMoveAnimating = false;
+        if(pendingBotMove != null) placeBotMove();
+    }
+
+    private void placeBotMove(){
+        final int x = pendingBotMove.getFirst();
+        final int y = pendingBotMove.getSecond();
+        pendingBotMove = null;
+
+        states[x][y].setMyColor(CellState.MyColor.BLUE);
+        processForAnimation(states[x][y], false);
+
+        redTurn = !redTurn;
+        if(boardListener != null) {
+            boardListener.onSoundPlayRequest(SoundController.SoundType.MOVE_DONE);
+            //preListener.onEnd();
+
+            boardListener.showWhoseMove(redTurn);
+        }
     }
 
     public void drawBoard(int n){
@@ -512,6 +547,9 @@ public class GameBoard extends View {
     }
 
     public void restart(){
+        EngineSession.getInstance().cancel(); // the search of the old game, if any
+        userMoveAnimating = false;
+        pendingBotMove = null;
         redTurn = true;
         if(boardListener != null) boardListener.showWhoseMove(redTurn);
         isTheFirstMove = true;
@@ -543,8 +581,11 @@ public class GameBoard extends View {
             return;
         }
 
-        predictionAlgo = (predictionAlgo == PredictionAlgo.ALPHA_BETA_PRUNING) ?
-                PredictionAlgo.GENETIC_ALGO : PredictionAlgo.ALPHA_BETA_PRUNING;
+        predictionAlgo = switch (predictionAlgo){
+            case ALPHA_BETA_PRUNING -> PredictionAlgo.GENETIC_ALGO;
+            case GENETIC_ALGO -> PredictionAlgo.MCTS;
+            case MCTS -> PredictionAlgo.ALPHA_BETA_PRUNING;
+        };
 
         if(boardListener != null) boardListener.onAlgoChanged(showToast);
     }
@@ -557,9 +598,9 @@ public class GameBoard extends View {
         final CellState.MyColor[][] field = getCurrentBoard();
         final CellState.MyColor winner = Calculator.getGameWinner(field,N);
 
-        if( winner == null) { // predict next move is bot`s turn
-            if( isUserMove ){ // true = current turn was user's turn
-                startPredicting(null);
+        if( winner == null) {
+            if( isUserMove ){ // true = current turn was user's turn, the bot's search started on the tap
+                onUserMoveShown();
             }
         }
         else { // game is finished
@@ -626,6 +667,21 @@ public class GameBoard extends View {
 
         continueProcessing(states[x][y]);
     }
+    // the bot plays the best move its search has found so far
+    public void moveNow(){
+        if(redTurn) return; // not thinking
+
+        if(EngineSession.getInstance().moveNow() == null && boardListener != null){
+            boardListener.onMessageToShow("Almost ready");
+        }
+    }
+
+    // stops the search and its thread, the view can't predict after this
+    public void release(){
+        EngineSession.getInstance().cancel();
+        service.shutdownNow();
+    }
+
     private interface PreListener{
         void onEnd();
     }
@@ -656,6 +712,7 @@ public class GameBoard extends View {
     private int prevTimeTaken = 30; // in seconds
     private void startPredicting(PredictionAlgo reqAlgo){ // will use algo without any check if not null
         if(boardListener != null) boardListener.onProgressBarUpdate(true);
+        final CancellationToken token = EngineSession.getInstance().begin();
 
         for(int i=0; i<N; i++){
             for(int j=0; j<N; j++){
@@ -665,6 +722,7 @@ public class GameBoard extends View {
         }
 
         service.execute(() -> {
+            if(isCancelled(token)) return; // restarted before it could start, the engines would take the new token
             long startTime = System.currentTimeMillis();
 
             PredictionAlgo algo = reqAlgo;
@@ -680,9 +738,13 @@ public class GameBoard extends View {
 
             setPredictionAlgo(algo,false);
 
-            Pair<Integer,Integer> xy = (predictionAlgo == PredictionAlgo.ALPHA_BETA_PRUNING )
-                    ? predictByAlphaBeta() : predictByGeneticAlgo();
+            Pair<Integer,Integer> xy = switch (predictionAlgo){
+                case ALPHA_BETA_PRUNING -> predictByAlphaBeta();
+                case GENETIC_ALGO -> predictByGeneticAlgo();
+                case MCTS -> predictByMcts();
+            };
 
+            if(isCancelled(token)) return;
             if(xy == null) return;
 
             int x = xy.getFirst();
@@ -694,6 +756,7 @@ public class GameBoard extends View {
             prevTimeTaken = (prevTimeTaken + (int)(dif/1000)) / 2; // average so that it decreases slowly
 
             System.out.println("Actual time taken: "+dif);
+
 //            botProgressPercentStr = "Took: "+ dif +"ms";
             mHandler.post(() ->{
                 if(boardListener != null) {
@@ -702,21 +765,28 @@ public class GameBoard extends View {
                 }
             });
 
-            long delay = (dif > 2000) ? 0L : (2000L - dif); // will take at least 2 seconds
+            mHandler.post(() -> {
+                if(token.isCancelled()) return;
+                pendingBotMove = xy;
+                if(!userMoveAnimating) placeBotMove();
+            });
 
-            mHandler.postDelayed(() -> {
-                states[x][y].setMyColor(CellState.MyColor.BLUE);
-                processForAnimation(states[x][y], false);
+            if(predictionAlgo == PredictionAlgo.ALPHA_BETA_PRUNING){ // think about the user's reply meanwhile
+                final CellState.MyColor[][] afterBotMove = getCurrentBoard();
+                afterBotMove[y][x] = CellState.MyColor.BLUE; // y,x correct
+                AlphaBetaApplier.getInstance().ponder(afterBotMove, N);
+            }
+        });
+    }
 
-                redTurn = !redTurn;
-                if(boardListener != null) {
-                    boardListener.onSoundPlayRequest(SoundController.SoundType.MOVE_DONE);
-                    //preListener.onEnd();
+    // restarted meanwhile, hides the progress of the old search
+    private boolean isCancelled(CancellationToken token){
+        if(!token.isCancelled()) return false;
 
-                    boardListener.showWhoseMove(redTurn);
-                }
-            }, delay);
+        mHandler.post(() -> {
+            if(boardListener != null) boardListener.onProgressBarUpdate(false);
         });
+        return true;
     }
 
     @SuppressWarnings("unchecked")
@@ -768,7 +838,7 @@ public class GameBoard extends View {
                         futureResult.complete(yx);
                     }
                 })
-                .predict(currentBoard,N, lastClickedCell, (fixedPredictionAlgo != null));
+                .predict(currentBoard,N, lastClickedCell);
 
         try {
             futureResult.get();
@@ -806,6 +876,9 @@ public class GameBoard extends View {
                         });
                     }
 
+                    @Override
+                    public void onStopped(GeneticStopReason reason, int generations) {} // the move follows either way
+
                     @Override
                     public void onDrawRequest(List<Cell> selectedBoard) {
                         for(Cell cell : selectedBoard){
@@ -837,6 +910,61 @@ public class GameBoard extends View {
         return posToPlace[0];
     }
 
+    @SuppressWarnings("unchecked")
+    private Pair<Integer, Integer> predictByMcts(){
+        final CompletableFuture<Pair<Integer, Integer>> futureResult = new CompletableFuture<>();
+        Pair<Integer, Integer>[] posToPlace = new Pair[1];
+        posToPlace[0] = null;
+
+        final CellState.MyColor[][] currentBoard = getCurrentBoard();
+        MctsApplier.getInstance()
+                .setMctsListener(new MctsListener() {
+                    @Override
+                    public void onProgress(int progress) {
+                        mHandler.post(() ->{
+                            if(boardListener != null) boardListener.onProgressUpdate(progress +"%");
+                        });
+                    }
+
+                    @Override
+                    public void onError(String message, boolean changeToAlphaBeta) {
+                        mHandler.post(() -> {
+                            if(boardListener != null) boardListener.onMessageToShow(message);
+                            if(changeToAlphaBeta) {
+                                futureResult.complete(null);
+                                swapPredictionAlgo(true, true);
+                                startPredicting(PredictionAlgo.ALPHA_BETA_PRUNING);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onCellValueUpdated(int x, int y, int visits) {
+                        states[y][x].score = visits+""; // y,x correct
+                        mHandler.post(() -> invalidate());
+                    }
+
+                    @Override
+                    public void onFinished(Pair<Integer, Integer> xy) {
+                        if(xy == null){
+                            futureResult.complete(null);
+                            return;
+                        }
+                        Pair<Integer,Integer> yx = new Pair<>(xy.getSecond(), xy.getFirst()); // must
+
+                        posToPlace[0] = yx;
+                        futureResult.complete(yx);
+                    }
+                })
+                .predict(currentBoard, N);
+
+        try {
+            futureResult.get();
+        } catch (InterruptedException | ExecutionException ignored){}
+
+        return posToPlace[0];
+    }
+
     public interface BoardListener{
         void onMessageToShow(String message);
         void onAlgoChanged(boolean showToast);
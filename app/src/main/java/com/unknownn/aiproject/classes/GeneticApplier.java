@@ -1,31 +1,54 @@
 package com.unknownn.aiproject.classes;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.unknownn.aiproject.enums.GeneticStopReason;
 import com.unknownn.aiproject.listener.GeneticListener;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import kotlin.Pair;
 
 public class GeneticApplier {
 
     // Remember, the whole thing is running inside a thread
-    private final Random random = new Random();
-    private static final int POPULATION_SIZE = 10;
+    private SplittableRandom random = new SplittableRandom();
+    private static final int POPULATION_SIZE = 10; // even, crossover makes two children at a time
     private static final int MUTATION_RATE = 5;
-    private static final int NO_OF_IT = 120;
+    private static final int NO_OF_IT = 1_000; // at most, normally convergence or the time budget ends it first
+    private static final int STAGNATION_LIMIT = 50; // generations without a better best
+    private static final double MIN_DIVERSITY = 0.05;
     private static final int TOURNAMENT_SIZE = 2;
+    private static final int MIGRATION_INTERVAL = 10; // generations
     private static GeneticApplier instance = null;
 
     private int N;
-    private CellState.MyColor[][] board;
+    private BitBoard board;
+    private final ThreadLocal<BitBoard> scratchBoards = new ThreadLocal<>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // A chromosome is a permutation of the blank cells (x*N + y), the first half is red and the rest blue.
+    // Each island evolves its own population, one island is the plain single population GA
+    private int length;
+    private int half;
+    private int[] blanks = new int[0];
+    private int islandCount = 1;
+    private int islandSize = POPULATION_SIZE;
+    private int migrationInterval = MIGRATION_INTERVAL;
+    private Island[] islands = new Island[0];
+    private MigrationBuffer migrationBuffer = null;
+
+    // best of all islands, islands offer theirs under the lock
+    private final Object bestLock = new Object();
+    private int[] globalBest = new int[0];
+    private int globalBestVal;
+    private CancellationToken token;
 
     public static GeneticApplier getInstance(){
         if(instance == null) instance = new GeneticApplier();
@@ -43,242 +66,494 @@ public class GeneticApplier {
         return this;
     }
 
-    // Random point swapped
-    private List<Cell> mutateChildren(List<Cell> chromosome){
+    private long timeBudget = Long.MAX_VALUE / 2; // by default convergence or NO_OF_IT decides
 
-        final int rand = random.nextInt(100);
+    // evolves until it runs out or the population has converged, whichever is first
+    public GeneticApplier setTimeBudget(long timeBudget){
+        this.timeBudget = timeBudget;
+        return this;
+    }
 
-        if (rand < MUTATION_RATE) {
-            final int indexOne = random.nextInt(chromosome.size());
-            int indexTwo = random.nextInt(chromosome.size());
+    private int stagnationLimit = STAGNATION_LIMIT;
+    private double minDiversity = MIN_DIVERSITY;
 
-            while (indexOne == indexTwo) {
-                indexTwo = random.nextInt(chromosome.size());
-            }
+    // converged when the best has not improved for stagnationLimit generations, or when the population's
+    // chromosomes colour the cells so alike that their diversity (see Island.getDiversity) is below minDiversity
+    public GeneticApplier setConvergence(int stagnationLimit, double minDiversity){
+        this.stagnationLimit = Math.max(1, stagnationLimit);
+        this.minDiversity = minDiversity;
+        return this;
+    }
 
-            final Cell temp = chromosome.get(indexOne);
-            chromosome.set(indexOne, chromosome.get(indexTwo));
-            chromosome.set(indexTwo, temp);
+    // threads computing the fitness of a generation, the result doesn't depend on it. Only for a single island,
+    // with more each one evaluates its own on its thread
+    public GeneticApplier setParallelism(int parallelism){
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
 
-            CellState.MyColor color = (indexOne < (chromosome.size()/2)) ? CellState.MyColor.RED : CellState.MyColor.BLUE;
-            chromosome.get(indexOne).setMyColor(color);
+    // populations evolving side by side on their own threads, each of islandSize chromosomes (rounded up to even).
+    // Every migrationInterval generations an island sends its best to the next one, which replaces its worst with it.
+    // More than one island is not reproducible for a seed, migrants arrive whenever the threads get to them
+    public GeneticApplier setIslands(int islandCount, int islandSize, int migrationInterval){
+        this.islandCount = Math.max(1, islandCount);
+        this.islandSize = Math.max(2, islandSize + (islandSize & 1));
+        this.migrationInterval = Math.max(1, migrationInterval);
+        return this;
+    }
 
-            color = (indexTwo < (chromosome.size()/2)) ? CellState.MyColor.RED : CellState.MyColor.BLUE;
-            chromosome.get(indexTwo).setMyColor(color);
-        }
+    // same island size and migration interval as before
+    public GeneticApplier setIslandCount(int islandCount){
+        return setIslands(islandCount, islandSize, migrationInterval);
+    }
 
-        return chromosome;
+    // same seed, same moves
+    public GeneticApplier setSeed(long seed){
+        this.random = new SplittableRandom(seed);
+        return this;
     }
 
-    // partially mapped cross-over
-    @NonNull
-    private static List<List<Cell>> applyCrossover(@NonNull List<Cell> parentOne, List<Cell> parentTwo){
-        final int half = parentOne.size() / 2;
+    // the higher score is better for blue, the bot, the first one wins a tie
+    private static boolean isPreferred(int candidate, int current){
+        return candidate > current;
+    }
 
-        final Cell[] childOne = new Cell[parentOne.size()];
-        final Cell[] childTwo = new Cell[parentOne.size()];
+    private static int getTheBest(int[] fitness){
+        int best = 0;
+        for(int i=1; i<fitness.length; i++){
+            if(isPreferred(fitness[i], fitness[best])) best = i;
+        }
+        return best;
+    }
 
-        final Random random = new Random();
+    // the lowest score, the last one loses a tie
+    private static int getTheWorst(int[] fitness){
+        int worst = 0;
+        for(int i=1; i<fitness.length; i++){
+            if(!isPreferred(fitness[i], fitness[worst])) worst = i;
+        }
+        return worst;
+    }
 
-        int indexOne = random.nextInt(half);
-        int indexTwo = half + random.nextInt(half);
+    private int calcFitness(final BitBoard board, int[] chromosome){
+        // apply the chromosome on the thread's reused copy of the board
+        BitBoard scratchBoard = scratchBoards.get();
+        if(scratchBoard == null || scratchBoard.N != N){
+            scratchBoard = new BitBoard(N);
+            scratchBoards.set(scratchBoard);
+        }
+        scratchBoard.copyFrom(board);
 
-        final Map<Cell,Cell> mapOne = new HashMap<>();
-        final Map<Cell,Cell> mapTwo = new HashMap<>();
+        for(int i=0; i<length; i++){
+            scratchBoard.makeMove(chromosome[i], (i < half) ? CellState.MyColor.RED : CellState.MyColor.BLUE);
+        }
 
-        for(int i = indexOne; i<indexTwo; i++){
-            childOne[i] = new Cell(parentTwo.get(i));
-            childTwo[i] = new Cell(parentOne.get(i));
+        return Calculator.getBoardScore(scratchBoard);
+    }
 
-            mapTwo.put(parentOne.get(i), parentTwo.get(i));
-            mapOne.put(parentTwo.get(i), parentOne.get(i));
+    // every random draw happens before, on the island's thread, so the order of evaluation doesn't matter
+    private void evaluate(int[][] chromosomes, int[] fitness){
+        if(parallelism == 1 || islandCount > 1){
+            for(int c=0; c<chromosomes.length; c++) fitness[c] = calcFitness(board, chromosomes[c]);
+            return;
         }
 
-        for(int i=0; i<childOne.length; i++){
-            if(i < indexOne || i >= indexTwo) {
-                Cell cellOne = parentOne.get(i);
-                while (mapOne.containsKey(cellOne)) {
-                    cellOne = mapOne.get(cellOne);
-//                    System.out.println(cellOne);
-                }
+        EngineSession.getInstance().getEvaluationPool(parallelism)
+                .invoke(new EvaluateTask(chromosomes, fitness, 0, chromosomes.length));
+    }
 
-                assert cellOne != null;
-                childOne[i] = new Cell(cellOne);
+    private final class EvaluateTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 2; // chromosomes a task evaluates itself
 
-                Cell cellTwo = parentTwo.get(i);
-                while (mapTwo.containsKey(cellTwo)) {
-                    cellTwo = mapTwo.get(cellTwo);
-                }
+        private final int[][] chromosomes;
+        private final int[] fitness;
+        private final int from, to;
+
+        EvaluateTask(int[][] chromosomes, int[] fitness, int from, int to) {
+            this.chromosomes = chromosomes;
+            this.fitness = fitness;
+            this.from = from;
+            this.to = to;
+        }
 
-                assert cellTwo != null;
-                childTwo[i] = new Cell(cellTwo);
+        @Override
+        protected void compute() {
+            if(to - from <= THRESHOLD){
+                for(int c=from; c<to; c++) fitness[c] = calcFitness(board, chromosomes[c]);
+                return;
             }
 
-            // making the first half of same color
-            CellState.MyColor color = (i < half) ? CellState.MyColor.RED : CellState.MyColor.BLUE;
+            final int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(chromosomes, fitness, from, middle),
+                    new EvaluateTask(chromosomes, fitness, middle, to));
+        }
+    }
 
-            childOne[i].setMyColor(color);
-            childTwo[i].setMyColor(color);
+    // One population and everything it draws from. Every generation the offspring replace the population,
+    // except that the best so far takes the place of the worst child so it is never lost
+    private final class Island{
+        private final int index;
+        private final int size;
+        private SplittableRandom random;
+        private int[][] population; // swapped with the offspring every generation
+        private int[][] offspring;
+        private int[] fitness;
+        private int[] offspringFitness;
+        private final int[] best;
+        private int bestVal;
+        private int generations;
+        private GeneticStopReason stopReason;
+        private final int[] redCount; // cell -> chromosomes that colour it red, for the diversity
+        private final int[] mapOne; // crossover scratch, cell -> cell, -1 if not in the swapped segment
+        private final int[] mapTwo;
+
+        Island(int index, int size) {
+            this.index = index;
+            this.size = size;
+            population = new int[size][length];
+            offspring = new int[size][length];
+            fitness = new int[size];
+            offspringFitness = new int[size];
+            best = new int[length];
+            redCount = new int[N*N];
+            mapOne = new int[N*N];
+            mapTwo = new int[N*N];
+            Arrays.fill(mapOne, -1);
+            Arrays.fill(mapTwo, -1);
         }
 
-        final List<List<Cell>> offspring = new ArrayList<>();
-        final List<Cell> child1 = new ArrayList<>();
-        final List<Cell> child2 = new ArrayList<>();
+        void init(SplittableRandom random){
+            this.random = random;
+            generations = 0;
+
+            for(int c=0; c<size; c++){
+                final int[] chromosome = population[c];
+                System.arraycopy(blanks, 0, chromosome, 0, length);
 
-        for(int i=0; i<childOne.length; i++){
-            child1.add(childOne[i]);
-            child2.add(childTwo[i]);
+                for(int i=length-1; i>0; i--){ // shuffle
+                    final int pick = random.nextInt(i + 1);
+                    final int temp = chromosome[i];
+                    chromosome[i] = chromosome[pick];
+                    chromosome[pick] = temp;
+                }
+
+            }
+            evaluate(population, fitness);
+
+            final int first = getTheBest(fitness);
+            System.arraycopy(population[first], 0, best, 0, length);
+            bestVal = fitness[first];
         }
 
-        offspring.add(child1);
-        offspring.add(child2);
+        // until the time, the token or convergence say so. Only the island on the calling thread reports progress
+        void evolve(long startTime, long deadline, boolean reportProgress){
+            int sinceImprovement = 0;
+            int lastProgress = -1;
 
-        return offspring;
-    }
+            while (true){
+                if(token.isCancelled()){
+                    stopReason = GeneticStopReason.CANCELLED;
+                    return;
+                }
+                if(token.isMoveNowRequested()){
+                    stopReason = GeneticStopReason.MOVE_NOW;
+                    return;
+                }
+                final long now = System.currentTimeMillis();
+                if(now >= deadline){
+                    stopReason = GeneticStopReason.TIME_UP;
+                    return;
+                }
+                if(generations == NO_OF_IT){
+                    stopReason = GeneticStopReason.MAX_GENERATIONS;
+                    return;
+                }
+
+                if(reportProgress){ // once per percent, the listener posts every call to the main thread
+                    final int progress = (int)Math.max((100L*generations) / NO_OF_IT, (100*(now - startTime)) / timeBudget);
+                    if(progress != lastProgress) geneticListener.onProgress(progress);
+                    lastProgress = progress;
+                }
+
+                for(int c=0; c<size; c+=2){
+
+                    final int parentOne = getParentFromTournament();
+                    final int parentTwo = getParentFromTournament();
+
+                    applyCrossover(population[parentOne], population[parentTwo], offspring[c], offspring[c+1]);
+
+                    mutateChildren(offspring[c]);
+                    mutateChildren(offspring[c+1]);
+                }
+                evaluate(offspring, offspringFitness); // the only fitness call for each of them
+                generations++;
+
+                final int localBest = getTheBest(offspringFitness);
 
-    private List<Cell> getParentFromTournament(List<List<Cell>> population){
-        List<List<Cell>> tournament = new ArrayList<>();
+                if(offspringFitness[localBest] > bestVal){
+                    bestVal = offspringFitness[localBest];
+                    System.arraycopy(offspring[localBest], 0, best, 0, length);
+                    offerBest(best, bestVal);
+                    sinceImprovement = 0;
+                }
+                else{ // elitism, the children didn't beat it
+                    final int worst = getTheWorst(offspringFitness);
+                    System.arraycopy(best, 0, offspring[worst], 0, length);
+                    offspringFitness[worst] = bestVal;
+                    sinceImprovement++;
+                }
+                promoteOffspring();
+                if(migrationBuffer != null && generations % migrationInterval == 0) migrate();
 
-        for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-            int randomIndex = random.nextInt(population.size());
-            tournament.add(population.get(randomIndex));
+                if(sinceImprovement >= stagnationLimit){
+                    stopReason = GeneticStopReason.STAGNATED;
+                    return;
+                }
+                if(getDiversity(population) < minDiversity){
+                    stopReason = GeneticStopReason.CONVERGED;
+                    return;
+                }
+            }
         }
 
-        return Collections.max(tournament, (chOne, chTwo) -> calcFitness(board,chTwo) - calcFitness(board,chOne));
-    }
+        // 1 when every cell is red in half of the chromosomes, 0 when all of them colour every cell the same
+        private double getDiversity(int[][] chromosomes){
+            for(int i=0; i<length; i++) redCount[blanks[i]] = 0;
+            for(int[] chromosome : chromosomes){
+                for(int i=0; i<half; i++) redCount[chromosome[i]]++;
+            }
 
-    private List<Cell> getTheBest(List<List<Cell>> population){
-        return Collections.max(population, (chOne, chTwo) -> calcFitness(board,chTwo) - calcFitness(board,chOne));
-    }
+            long spread = 0;
+            for(int i=0; i<length; i++){
+                final int red = redCount[blanks[i]];
+                spread += (long)red * (size - red);
+            }
+            return (4.0 * spread) / ((double)length * size * size);
+        }
 
-    private int calcFitness(final CellState.MyColor[][] board, List<Cell> chromosome){
-        // copy the board to apply the chromosome
-        final CellState.MyColor[][] copiedBoard = new CellState.MyColor[N][N];
+        private void promoteOffspring(){
+            final int[][] chromosomes = population;
+            population = offspring;
+            offspring = chromosomes;
 
-        for(int x=0; x<N; x++){
-            System.arraycopy(board[x], 0, copiedBoard[x], 0, N);
+            final int[] scores = fitness;
+            fitness = offspringFitness;
+            offspringFitness = scores;
         }
-        for(Cell cell : chromosome){
-            copiedBoard[cell.x][cell.y] = cell.myColor;
+
+        private void migrate(){
+            migrationBuffer.emigrate(index, best, bestVal);
+
+            final MigrationBuffer.Migrant migrant = migrationBuffer.immigrate(index);
+            if(migrant == null) return;
+
+            final int worst = getTheWorst(fitness);
+            System.arraycopy(migrant.chromosome, 0, population[worst], 0, length);
+            fitness[worst] = migrant.fitness;
         }
 
-        return Calculator.getBoardScore(copiedBoard,N);
-    }
+        // Random point swapped, the colours follow the positions
+        private void mutateChildren(int[] chromosome){
 
-    @Nullable
-    private List<List<Cell>> initPopulation(CellState.MyColor[][] board){
+            final int rand = random.nextInt(100);
 
-        final List<Pair<Integer,Integer>> emptyList = new ArrayList<>();
+            if (rand < MUTATION_RATE) {
+                final int indexOne = random.nextInt(length);
+                int indexTwo = random.nextInt(length);
 
-        for(int x = 0; x < N; x++){
-            for(int y = 0; y<N; y++){
-                if(board[x][y] == CellState.MyColor.BLANK){
-                    emptyList.add(new Pair<>(x,y));
+                while (indexOne == indexTwo) {
+                    indexTwo = random.nextInt(length);
                 }
+
+                final int temp = chromosome[indexOne];
+                chromosome[indexOne] = chromosome[indexTwo];
+                chromosome[indexTwo] = temp;
             }
         }
 
-        if(emptyList.size() < POPULATION_SIZE) {
-            geneticListener.onError("Can't apply. Too few cells are left", true);
-            return null;
-        }
+        // partially mapped cross-over, the segment crosses the middle so both colours are exchanged
+        private void applyCrossover(int[] parentOne, int[] parentTwo, int[] childOne, int[] childTwo){
+            final int indexOne = random.nextInt(half);
+            final int indexTwo = half + random.nextInt(half);
 
-        final List<List<Cell>> populations = new ArrayList<>();
+            for(int i = indexOne; i<indexTwo; i++){
+                childOne[i] = parentTwo[i];
+                childTwo[i] = parentOne[i];
 
-        for(int i=0; i<POPULATION_SIZE; i++){
-            final List<Cell> chromosome = new ArrayList<>();
+                mapTwo[parentOne[i]] = parentTwo[i];
+                mapOne[parentTwo[i]] = parentOne[i];
+            }
 
-            // copy empty list
-            final List<Pair<Integer, Integer>> copiedEmptyList = new ArrayList<>(emptyList);
+            for(int i=0; i<length; i++){
+                if(i >= indexOne && i < indexTwo) continue;
 
-            int half = copiedEmptyList.size() / 2;
-            int count = 0;
-            while (!copiedEmptyList.isEmpty()){
-                final int index = random.nextInt(copiedEmptyList.size());
-                final Pair<Integer,Integer> pair = copiedEmptyList.get(index);
+                int cellOne = parentOne[i];
+                while (mapOne[cellOne] >= 0) cellOne = mapOne[cellOne];
+                childOne[i] = cellOne;
 
-                final Cell cell = new Cell(
-                        pair.getFirst(),
-                        pair.getSecond(),
-                        (count < half) ? CellState.MyColor.RED : CellState.MyColor.BLUE
-                );
+                int cellTwo = parentTwo[i];
+                while (mapTwo[cellTwo] >= 0) cellTwo = mapTwo[cellTwo];
+                childTwo[i] = cellTwo;
+            }
 
-                chromosome.add(cell);
-                count++;
-                copiedEmptyList.remove(index);
+            for(int i = indexOne; i<indexTwo; i++){ // clean for the next pair
+                mapTwo[parentOne[i]] = -1;
+                mapOne[parentTwo[i]] = -1;
             }
+        }
 
-//            chromosome.sort(Comparator.comparingInt(t -> t.myColor.id));
-            populations.add(chromosome);
+        private int getParentFromTournament(){
+            int winner = -1;
+
+            for (int i = 0; i < TOURNAMENT_SIZE; i++) {
+                final int candidate = random.nextInt(size);
+                if(winner < 0 || isPreferred(fitness[candidate], fitness[winner])) winner = candidate;
+            }
+
+            return winner;
         }
+    }
 
-        return populations;
+    // the first island's starting best is taken as it is, after that only a better one
+    private void offerBest(int[] chromosome, int fitness){
+        synchronized (bestLock){
+            if(fitness <= globalBestVal) return;
+            globalBestVal = fitness;
+            System.arraycopy(chromosome, 0, globalBest, 0, length);
+            publishBest(token, toCells(globalBest), globalBestVal);
+        }
     }
 
-    private boolean isPrevSolutionWinnable(List<Cell> solution, final CellState.MyColor[][] curBoard){
-        if(solution == null) return false;
+    private List<Cell> toCells(int[] chromosome){
+        final List<Cell> cells = new ArrayList<>(length);
+        for(int i=0; i<length; i++){
+            cells.add(new Cell(chromosome[i] / N, chromosome[i] % N,
+                    (i < half) ? CellState.MyColor.RED : CellState.MyColor.BLUE));
+        }
+        return cells;
+    }
+
+    // false if there are too few blank cells
+    private boolean initPopulation(BitBoard board){
+
+        final int N_N = N*N;
+        if(blanks.length != N_N) blanks = new int[N_N];
+        length = 0;
+        for(int i=0; i<N_N; i++){
+            if(board.isBlank(i)) blanks[length++] = i;
+        }
 
-        final CellState.MyColor[][] copiedBoard = new CellState.MyColor[N][N];
+        if(length < islandSize) {
+            geneticListener.onError("Can't apply. Too few cells are left", true);
+            return false;
+        }
+        half = length / 2;
+
+        if(islands.length != islandCount || islands[0].size != islandSize
+                || globalBest.length != length || islands[0].mapOne.length != N_N){
+            islands = new Island[islandCount];
+            for(int i=0; i<islandCount; i++) islands[i] = new Island(i, islandSize);
+            globalBest = new int[length];
+        }
+        migrationBuffer = (islandCount > 1) ? new MigrationBuffer(islandCount) : null;
 
-        for(int x=0; x<N; x++){
-            System.arraycopy(curBoard[x], 0, copiedBoard[x], 0, N);
+        for(int i=0; i<islandCount; i++){
+            islands[i].init(i == 0 ? random : random.split()); // one island draws exactly what it always did
         }
 
+        globalBestVal = islands[0].bestVal;
+        System.arraycopy(islands[0].best, 0, globalBest, 0, length);
+        publishBest(token, toCells(globalBest), globalBestVal);
+        for(int i=1; i<islandCount; i++) offerBest(islands[i].best, islands[i].bestVal);
+
+        return true;
+    }
+
+    private boolean isPrevSolutionWinnable(List<Cell> solution, final BitBoard curBoard){
+        if(solution == null) return false;
+
+        final BitBoard copiedBoard = curBoard.copy();
+
         for(int i=solution.size()-1; i>=0; i--){
             final Cell cell = solution.get(i);
-            if(copiedBoard[cell.x][cell.y] == CellState.MyColor.BLANK) {
-                copiedBoard[cell.x][cell.y] = cell.myColor;
+            if(copiedBoard.isBlank(cell.x*N + cell.y)) {
+                copiedBoard.makeMove(cell.x*N + cell.y, cell.myColor);
             }
             else{
                 solution.remove(cell); // not valid anymore
             }
         }
 
-        final CellState.MyColor winner = Calculator.getGameWinner(copiedBoard, N);
+        final CellState.MyColor winner = Calculator.getGameWinner(copiedBoard);
 
         return winner == CellState.MyColor.BLUE;
     }
 
-    private CellState.MyColor[][] copyBoard(CellState.MyColor[][] board){
-        final CellState.MyColor[][] copiedBoard = new CellState.MyColor[N][N];
+    private Pair<Integer,Integer> chooseTheBestCellToPlace(BitBoard board, List<Cell> solution){
+        final Cell bestCell = findBestCell(board, solution, true);
 
-        for(int x=0; x<N; x++){
-            System.arraycopy(board[x], 0, copiedBoard[x], 0, N);
-        }
-        return copiedBoard;
+        solution.remove(bestCell);
+        if(bestCell == null) return null;
+
+        return new Pair<>(bestCell.x, bestCell.y);
     }
 
-    private Pair<Integer,Integer> chooseTheBestCellToPlace(CellState.MyColor[][] board, List<Cell> solution){
+    // the blue cell of the solution that is best to place first
+    @Nullable
+    private Cell findBestCell(BitBoard board, List<Cell> solution, boolean print){
         int score = Integer.MIN_VALUE;
         Cell bestCell = null;
 
+        final BitBoard copied = board.copy();
         for(Cell cell : solution){
             if(cell.myColor == CellState.MyColor.BLUE){
 
-                CellState.MyColor[][] copied = copyBoard(board);
-                copied[cell.x][cell.y] = CellState.MyColor.BLUE;
+                final int index = cell.x*N + cell.y;
+                copied.makeMove(index, CellState.MyColor.BLUE);
+                int curScore = Calculator.getBoardScore(copied);
+                copied.unmakeMove(index);
 
-                int curScore = Calculator.getBoardScore(copied, N);
                 if(curScore > score){
                     score = curScore;
                     bestCell = cell;
-                    System.out.println("Best score is: "+score);
+                    if(print) System.out.println("Best score is: "+score);
                 }
             }
         }
 
-        solution.remove(bestCell);
-        if(bestCell == null) return null;
+        return bestCell;
+    }
 
-        return new Pair<>(bestCell.x, bestCell.y);
+    private void publishBest(CancellationToken token, List<Cell> solution, int fitness){
+        final Cell cell = findBestCell(board, solution, false);
+        if(cell != null) EngineSession.getInstance().publishBest(token, cell.x, cell.y, fitness);
     }
 
     private List<Cell> prevBestSolution = null;
+    private double lastGenerationsPerSecond = 0;
+    private GeneticStopReason lastStopReason = null;
+
+    // of the last predict call that evolved a population
+    public GeneticStopReason getLastStopReason() {
+        return lastStopReason;
+    }
+
+    // throughput of the last predict call that evolved a population, generations of all islands together
+    public double getLastGenerationsPerSecond() {
+        return lastGenerationsPerSecond;
+    }
+
     private volatile CellState lastClickedCell = null;
-    public void predict(int N, CellState.MyColor[][] board, CellState lastClickedCell){
-        this.N = N;
+    public void predict(int N, CellState.MyColor[][] field, CellState lastClickedCell){
+        predict(BitBoard.fromField(field, N), lastClickedCell);
+    }
+
+    public void predict(BitBoard board, CellState lastClickedCell){
+        this.N = board.N;
         this.board = board;
         this.lastClickedCell = lastClickedCell;
+        this.token = EngineSession.getInstance().getToken();
 
         if( isPrevSolutionWinnable(prevBestSolution, board) ){
             geneticListener.onProgress(100);
@@ -300,48 +575,45 @@ public class GeneticApplier {
             return;
         }
 
-        List<List<Cell>> populations = initPopulation(board);
-        if(populations == null) return;
-
-        List<Cell> globalBest = getTheBest(populations);
-        int globalBestVal = calcFitness(board, globalBest);
-
-        int it = 0;
-        while (it++ < NO_OF_IT){
-
-            List<List<Cell>> offspring = new ArrayList<>();
-
-            while (offspring.size() < populations.size()){
-
-                final List<Cell> parentOne = getParentFromTournament(populations);
-                final List<Cell> parentTwo = getParentFromTournament(populations);
-
-                final List<List<Cell>> childAfterCross = applyCrossover(parentOne, parentTwo);
-
-                for(List<Cell> child : childAfterCross) {
-                    final List<Cell> mutatedChild = mutateChildren(child);
-                    offspring.add(mutatedChild);
-                }
+        if(!initPopulation(board)) return;
+        final long startTime = System.currentTimeMillis();
+        final long deadline = startTime + timeBudget;
+
+        // the first island stays on this thread, the others on the pool
+        final List<ForkJoinTask<?>> others = new ArrayList<>(islandCount - 1);
+        if(islandCount > 1){
+            final ForkJoinPool pool = EngineSession.getInstance().getEvaluationPool(islandCount - 1);
+            for(int i=1; i<islandCount; i++){
+                final Island island = islands[i];
+                others.add(pool.submit(() -> island.evolve(startTime, deadline, false)));
             }
+        }
+        islands[0].evolve(startTime, deadline, true);
+        for(ForkJoinTask<?> task : others) task.join();
+
+        // the island that went on the longest decided when it ended
+        Island last = islands[0];
+        int generations = 0;
+        for(Island island : islands){
+            generations += island.generations;
+            if(island.generations > last.generations) last = island;
+        }
+        lastStopReason = token.isCancelled() ? GeneticStopReason.CANCELLED : last.stopReason;
 
-            final List<Cell> localBest = getTheBest(offspring);
-
-            int localBestVal = calcFitness(board, localBest);
-
-            if(localBestVal > globalBestVal){
-                globalBestVal = localBestVal;
-                globalBest = localBest;
-            }
+        final long elapsed = System.currentTimeMillis() - startTime;
+        lastGenerationsPerSecond = (1000.0 * generations) / Math.max(1, elapsed);
+        if(geneticListener != null) geneticListener.onStopped(lastStopReason, generations);
 
-            int progress = (100*it) / NO_OF_IT;
-            geneticListener.onProgress(progress);
+        if(lastStopReason == GeneticStopReason.CANCELLED){ // half evolved, not worth keeping
+            if(geneticListener != null) geneticListener.onFinished(null);
+            return;
         }
 
-        prevBestSolution = globalBest;
-        geneticListener.onDrawRequest(globalBest);
+        prevBestSolution = toCells(globalBest);
+        geneticListener.onDrawRequest(prevBestSolution);
 
 
-        final Pair<Integer,Integer> toPlace = chooseTheBestCellToPlace(board,globalBest);
+        final Pair<Integer,Integer> toPlace = chooseTheBestCellToPlace(board,prevBestSolution);
         if(toPlace == null){
             if(geneticListener != null) {
                 geneticListener.onError("Something went wrong",true);
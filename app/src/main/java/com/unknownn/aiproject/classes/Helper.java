@@ -13,17 +13,30 @@ public class Helper {
         }catch (Exception ignored){}
     }
 
-    public static String convertBoardToString(CellState.MyColor[][] board, int N){
+    public static String convertBoardToString(BitBoard board){
         final StringBuilder builder = new StringBuilder();
-        for(int x=0; x<N; x++){
-            for(int y=0; y<N; y++){
-                final char ch = ( (board[x][y]) == CellState.MyColor.RED ) ? 'R' :
-                        ( (board[x][y]) == CellState.MyColor.BLUE ) ? 'B' : 'L';
+        for(int i=0; i<board.N_N; i++){
+            final char ch = board.isRed(i) ? 'R' :
+                    board.isBlue(i) ? 'B' : 'L';
 
-                builder.append(ch);
-            }
+            builder.append(ch);
         }
         return builder.toString();
     }
 
+    // reverse of convertBoardToString, null if the string is not a board
+    public static BitBoard convertStringToBoard(String strBoard){
+        final int N = (int)Math.round(Math.sqrt(strBoard.length()));
+        if(N < 1 || N > Zobrist.MAX_N || N*N != strBoard.length()) return null;
+
+        final BitBoard board = new BitBoard(N);
+        for(int i=0; i<strBoard.length(); i++){
+            final char ch = strBoard.charAt(i);
+            if(ch == 'R') board.makeMove(i, CellState.MyColor.RED);
+            else if(ch == 'B') board.makeMove(i, CellState.MyColor.BLUE);
+            else if(ch != 'L') return null;
+        }
+        return board;
+    }
+
 }
@@ -0,0 +1,47 @@
+package com.unknownn.aiproject.classes;
+
+// Precomputed neighbour indexes of every cell so that the hot loops don't need bound checks
+public class HexGrid {
+
+    // same order as the offsets used by Calculator, (dx, dy)
+    private static final int[][] OFFSETS = { {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1},{0, 1} };
+
+    private static final int[][][] NEIGHBOURS = new int[Zobrist.MAX_N + 1][][];
+
+    static {
+        for(int N=1; N<=Zobrist.MAX_N; N++){
+            NEIGHBOURS[N] = buildNeighbours(N);
+        }
+    }
+
+    private HexGrid() {}
+
+    // neighbours(N)[x*N + y] = indexes of the neighbours of (x,y)
+    public static int[][] neighbours(int N){
+        return NEIGHBOURS[N];
+    }
+
+    private static int[][] buildNeighbours(int N){
+        final int[][] table = new int[N*N][];
+        final int[] buffer = new int[OFFSETS.length];
+
+        for(int x=0; x<N; x++){
+            for(int y=0; y<N; y++){
+                int count = 0;
+                for(int[] off : OFFSETS){
+                    final int newX = x + off[0];
+                    final int newY = y + off[1];
+
+                    if(newX < 0 || newX >= N || newY < 0 || newY >= N) continue;
+                    buffer[count++] = newX*N + newY;
+                }
+
+                final int[] cellNeighbours = new int[count];
+                System.arraycopy(buffer, 0, cellNeighbours, 0, count);
+                table[x*N + y] = cellNeighbours;
+            }
+        }
+        return table;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.unknownn.aiproject.classes;
+
+// Disjoint sets of same coloured stones with 4 virtual edge nodes.
+// Blue connects TOP-BOTTOM (x = 0 to N-1), red connects LEFT-RIGHT (y = 0 to N-1).
+// Union by rank without path compression so every placed stone can be undone from a log
+public class HexUnionFind {
+
+    private final int N;
+    private final int N_N;
+    private final int TOP, BOTTOM, LEFT, RIGHT;
+    private final int[][] neighbours;
+
+    private final int[] parent;
+    private final int[] rank;
+
+    // per union: attached root, new root << 1 | rank increased. Per stone: number of unions
+    private final int[] log;
+    private int logSize = 0;
+
+    public HexUnionFind(int N) {
+        this.N = N;
+        this.N_N = N*N;
+        TOP = N_N;
+        BOTTOM = N_N + 1;
+        LEFT = N_N + 2;
+        RIGHT = N_N + 3;
+        neighbours = HexGrid.neighbours(N);
+
+        parent = new int[N_N + 4];
+        rank = new int[N_N + 4];
+        log = new int[N_N * (2*8 + 1)]; // at most 6 neighbours + 2 edges per stone
+
+        reset();
+    }
+
+    private void reset(){
+        for(int i=0; i<parent.length; i++){
+            parent[i] = i;
+            rank[i] = 0;
+        }
+        logSize = 0;
+    }
+
+    // build from the stones already on the board
+    public void rebuild(BitBoard board){
+        reset();
+        for(int i=0; i<N_N; i++){
+            if(!board.isBlank(i)) place(board, i, board.isBlue(i));
+        }
+    }
+
+    private int find(int node){
+        while (parent[node] != node) node = parent[node];
+        return node;
+    }
+
+    private int union(int one, int two){
+        int rootOne = find(one);
+        int rootTwo = find(two);
+        if(rootOne == rootTwo) return 0;
+
+        if(rank[rootOne] < rank[rootTwo]){
+            final int temp = rootOne;
+            rootOne = rootTwo;
+            rootTwo = temp;
+        }
+
+        // rootTwo goes under rootOne
+        parent[rootTwo] = rootOne;
+        final boolean rankIncreased = rank[rootOne] == rank[rootTwo];
+        if(rankIncreased) rank[rootOne]++;
+
+        log[logSize++] = rootTwo;
+        log[logSize++] = (rootOne << 1) | (rankIncreased ? 1 : 0);
+        return 1;
+    }
+
+    // the stone must already be on the board
+    public void place(BitBoard board, int index, boolean blue){
+        int unions = 0;
+
+        for(int nb : neighbours[index]){
+            if(blue ? board.isBlue(nb) : board.isRed(nb)) unions += union(index, nb);
+        }
+
+        final int x = index / N;
+        final int y = index % N;
+        if(blue){
+            if(x == 0) unions += union(index, TOP);
+            if(x == N-1) unions += union(index, BOTTOM);
+        }
+        else{
+            if(y == 0) unions += union(index, LEFT);
+            if(y == N-1) unions += union(index, RIGHT);
+        }
+
+        log[logSize++] = unions;
+    }
+
+    // reverts the last placed stone
+    public void undo(){
+        int unions = log[--logSize];
+        while (unions-- > 0){
+            final int packed = log[--logSize];
+            final int attached = log[--logSize];
+            final int root = packed >>> 1;
+
+            parent[attached] = attached;
+            if((packed & 1) == 1) rank[root]--;
+        }
+    }
+
+    public CellState.MyColor getWinner(){
+        if(find(LEFT) == find(RIGHT)) return CellState.MyColor.RED;
+        if(find(TOP) == find(BOTTOM)) return CellState.MyColor.BLUE;
+        return null;
+    }
+
+}
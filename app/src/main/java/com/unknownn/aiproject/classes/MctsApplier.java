@@ -0,0 +1,288 @@
+package com.unknownn.aiproject.classes;
+
+import com.unknownn.aiproject.listener.MctsListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kotlin.Pair;
+
+// Monte Carlo tree search for the bot (blue). A playout fills every blank cell at random, a full Hex board always
+// has exactly one winner. All threads work on the same tree, virtual losses keep them on different branches
+public class MctsApplier {
+
+    private static final long DEFAULT_TIME_BUDGET = 4_000L; // per move
+    private static final double EXPLORATION = 1.0;
+    private static final int EXPAND_VISITS = 2; // a leaf gets children once it was visited this many times
+    private static final int BLANK = 0, BLUE = 1, RED = 2;
+
+    private int N;
+    private int N_N;
+
+    private MctsListener mctsListener = null;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long timeBudget = DEFAULT_TIME_BUDGET;
+    private int playoutBudget = Integer.MAX_VALUE;
+
+    private final AtomicInteger playoutCount = new AtomicInteger();
+    private long startTime = 0L;
+    private int lastPlayoutCount = 0;
+
+    private static MctsApplier instance = null;
+    public static MctsApplier getInstance(){
+        if(instance == null) {
+            instance = new MctsApplier();
+        }
+        return instance;
+    }
+
+    // the threads belong to the EngineSession and stay
+    public static void destroy(){
+        instance = null;
+    }
+
+    private MctsApplier() {}
+
+    public MctsApplier setMctsListener(MctsListener mctsListener) {
+        this.mctsListener = mctsListener;
+        return this;
+    }
+
+    public MctsApplier setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+        return this;
+    }
+
+    // stops after this many playouts even if there is time left
+    public MctsApplier setPlayoutBudget(int playoutBudget) {
+        this.playoutBudget = playoutBudget;
+        return this;
+    }
+
+    public MctsApplier setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    // playouts done by the last predict call
+    public int getLastPlayoutCount() {
+        return lastPlayoutCount;
+    }
+
+    public void predict(final CellState.MyColor[][] field, int N){
+        predict(BitBoard.fromField(field, N));
+    }
+
+    public void predict(final BitBoard board){
+        this.N = board.N;
+        this.N_N = N*N;
+
+        if(board.getEmptyCount() == 0){
+            mctsListener.onError("No cell left to place", true);
+            return;
+        }
+
+        final ExecutorService services = EngineSession.getInstance().getSearchPool(threadCount);
+        token = EngineSession.getInstance().getToken();
+
+        final int[] rootCells = new int[N_N];
+        for(int i=0; i<N_N; i++){
+            rootCells[i] = board.isBlue(i) ? BLUE : (board.isRed(i) ? RED : BLANK);
+        }
+
+        final Node root = new Node(TranspositionTable.NO_MOVE, false); // the user (red) moved last
+        expand(root, rootCells);
+
+        startTime = System.currentTimeMillis();
+        playoutCount.set(0);
+
+        final List<Future<?>> futures = new ArrayList<>();
+        for(int i=0; i<threadCount; i++){
+            final int workerId = i;
+            futures.add( services.submit(() -> runPlayouts(root, rootCells, workerId)) );
+        }
+
+        for(Future<?> future : futures) {
+            try{
+                future.get();
+            }catch (InterruptedException | ExecutionException ignored){}
+        }
+
+        lastPlayoutCount = playoutCount.get();
+
+        for(Node child : root.children){
+            mctsListener.onCellValueUpdated(child.move / N, child.move % N, child.visits.get());
+        }
+
+        final Node best = getMostVisited(root);
+        mctsListener.onFinished(new Pair<>(best.move / N, best.move % N));
+    }
+
+    private static Node getMostVisited(Node root){
+        Node best = null;
+        for(Node child : root.children){
+            if(best == null || child.visits.get() > best.visits.get()) best = child;
+        }
+        return best;
+    }
+
+    private volatile CancellationToken token = new CancellationToken();
+
+    private boolean isBudgetOver(){
+        return token.isStopRequested() || playoutCount.get() >= playoutBudget || System.currentTimeMillis() - startTime >= timeBudget;
+    }
+
+    private void runPlayouts(Node root, int[] rootCells, int workerId){
+        final SplittableRandom random = new SplittableRandom(System.nanoTime() ^ workerId);
+        final int[] cells = new int[N_N];
+        final int[] blanks = new int[N_N];
+        final Node[] path = new Node[N_N + 1];
+        final int[] queue = new int[N_N];
+        final boolean[] visited = new boolean[N_N];
+
+        while (!isBudgetOver()){
+            System.arraycopy(rootCells, 0, cells, 0, N_N);
+
+            // selection, every node on the way takes a visit now (virtual loss) and a win later if it deserves
+            Node node = root;
+            int length = 0;
+            path[length++] = node;
+            node.visits.incrementAndGet();
+
+            while (true){
+                Node[] children = node.children;
+                if(children == null){
+                    if(node.visits.get() < EXPAND_VISITS) break;
+                    children = expand(node, cells);
+                }
+                if(children.length == 0) break;
+
+                node = selectChild(node, children);
+                node.visits.incrementAndGet();
+                cells[node.move] = node.blueMoved ? BLUE : RED;
+                path[length++] = node;
+            }
+
+            // playout, the side to move is the opposite of the one that made the last move
+            int noOfBlanks = 0;
+            for(int i=0; i<N_N; i++){
+                if(cells[i] == BLANK) blanks[noOfBlanks++] = i;
+            }
+            boolean blueTurn = !node.blueMoved;
+            for(int i=noOfBlanks-1; i>=0; i--){ // shuffled while filling
+                final int pick = random.nextInt(i + 1);
+                final int cell = blanks[pick];
+                blanks[pick] = blanks[i];
+
+                cells[cell] = blueTurn ? BLUE : RED;
+                blueTurn = !blueTurn;
+            }
+
+            final boolean blueWon = blueConnects(cells, queue, visited);
+
+            for(int i=1; i<length; i++){ // root has no move to credit
+                if(path[i].blueMoved == blueWon) path[i].wins.incrementAndGet();
+            }
+
+            final int count = playoutCount.incrementAndGet();
+            if(workerId == 0 && (count & 0xFF) == 0) reportProgress(root, count);
+        }
+    }
+
+    private void reportProgress(Node root, int count){
+        final Node best = getMostVisited(root);
+        if(best != null){ // score is the win rate in percent
+            EngineSession.getInstance().publishBest(token, best.move / N, best.move % N,
+                    (int)((100L * best.wins.get()) / Math.max(1, best.visits.get())));
+        }
+
+        final long elapsed = System.currentTimeMillis() - startTime;
+        final long byTime = (100 * elapsed) / Math.max(1, timeBudget);
+        final long byPlayouts = (100L * count) / playoutBudget;
+        mctsListener.onProgress( (int)Math.min(99, Math.max(byTime, byPlayouts)) );
+    }
+
+    private static Node selectChild(Node parent, Node[] children){
+        final double logVisits = Math.log(Math.max(1, parent.visits.get()));
+
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for(Node child : children){
+            final int visits = child.visits.get();
+            if(visits == 0) return child; // every child once first
+
+            final double value = (double)child.wins.get() / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+            if(value > bestValue){
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private Node[] expand(Node node, int[] cells){
+        synchronized (node){
+            if(node.children != null) return node.children; // another thread was faster
+
+            int count = 0;
+            for(int i=0; i<N_N; i++){
+                if(cells[i] == BLANK) count++;
+            }
+
+            final boolean blueMoves = !node.blueMoved;
+            final Node[] children = new Node[count];
+            count = 0;
+            for(int i=0; i<N_N; i++){
+                if(cells[i] == BLANK) children[count++] = new Node(i, blueMoves);
+            }
+
+            node.children = children;
+            return children;
+        }
+    }
+
+    // blue connects top (x = 0) to bottom (x = N-1) on a full board, otherwise red has won
+    private boolean blueConnects(int[] cells, int[] queue, boolean[] visited){
+        int head = 0, tail = 0;
+        for(int i=0; i<N_N; i++) visited[i] = false;
+
+        for(int y=0; y<N; y++){
+            if(cells[y] != BLUE) continue;
+            queue[tail++] = y;
+            visited[y] = true;
+        }
+
+        final int[][] neighbours = HexGrid.neighbours(N);
+        while (head < tail){
+            final int cell = queue[head++];
+            if(cell / N == N-1) return true;
+
+            for(int nb : neighbours[cell]){
+                if(visited[nb] || cells[nb] != BLUE) continue;
+                visited[nb] = true;
+                queue[tail++] = nb;
+            }
+        }
+        return false;
+    }
+
+    private static final class Node{
+        final int move; // cell placed to reach this node
+        final boolean blueMoved;
+        final AtomicInteger visits = new AtomicInteger();
+        final AtomicInteger wins = new AtomicInteger(); // for the one who made the move
+        volatile Node[] children = null;
+
+        Node(int move, boolean blueMoved) {
+            this.move = move;
+            this.blueMoved = blueMoved;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.unknownn.aiproject.classes;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Islands of the GeneticApplier hand their best chromosome to the next island of the ring through it.
+// One slot per island, written only by that island and emptied only by the next one, so a plain
+// set / getAndSet is enough, nobody waits. A migrant not taken yet is replaced by the newer one
+public class MigrationBuffer {
+
+    private final AtomicReferenceArray<Migrant> slots;
+
+    public MigrationBuffer(int islands) {
+        this.slots = new AtomicReferenceArray<>(islands);
+    }
+
+    public int getIslandCount() {
+        return slots.length();
+    }
+
+    // the chromosome is copied, the island keeps changing its own
+    public void emigrate(int island, int[] chromosome, int fitness){
+        slots.set(island, new Migrant(chromosome.clone(), fitness));
+    }
+
+    // from the previous island of the ring, null if it has sent nothing new
+    public Migrant immigrate(int island){
+        final int from = (island + slots.length() - 1) % slots.length();
+        return slots.getAndSet(from, null);
+    }
+
+    public static final class Migrant{
+        public final int[] chromosome;
+        public final int fitness;
+
+        Migrant(int[] chromosome, int fitness) {
+            this.chromosome = chromosome;
+            this.fitness = fitness;
+        }
+    }
+
+}
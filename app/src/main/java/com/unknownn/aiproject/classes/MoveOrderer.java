@@ -0,0 +1,114 @@
+package com.unknownn.aiproject.classes;
+
+// Per thread move generator for alpha-beta.
+// Order: transposition table move, killer moves of the ply, history score, cells next to the last move
+public class MoveOrderer {
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int KILLER_ONE_SCORE = 1 << 29;
+    private static final int KILLER_TWO_SCORE = 1 << 28;
+    private static final int MAX_HISTORY = 1 << 26;
+
+    private static final int RED = 0, BLUE = 1;
+
+    final int N;
+    private final int N_N;
+    private final boolean[][] adjacent;
+    private final int[][] killers;
+    private final int[][] history;
+    private final int[][] moves;
+    private final int[][] scores;
+
+    int searchId = -1;
+
+    public MoveOrderer(int N) {
+        this.N = N;
+        this.N_N = N*N;
+
+        adjacent = new boolean[N_N][N_N];
+        final int[][] neighbours = HexGrid.neighbours(N);
+        for(int i=0; i<N_N; i++){
+            for(int nb : neighbours[i]) adjacent[i][nb] = true;
+        }
+
+        killers = new int[N_N + 1][2];
+        history = new int[2][N_N];
+        moves = new int[N_N + 1][N_N];
+        scores = new int[N_N + 1][N_N];
+        clearKillers();
+    }
+
+    // killers belong to one search, history is only aged so it keeps helping the next one
+    public void newSearch(){
+        clearKillers();
+        for(int[] side : history){
+            for(int i=0; i<N_N; i++) side[i] >>= 1;
+        }
+    }
+
+    private void clearKillers(){
+        for(int[] killer : killers){
+            killer[0] = killer[1] = TranspositionTable.NO_MOVE;
+        }
+    }
+
+    // fills the move list of the ply and returns the number of moves
+    public int generate(BitBoard board, int ply, boolean blueToMove, int ttMove, int lastMove, boolean ordered){
+        final int[] plyMoves = moves[ply];
+        final int[] plyScores = scores[ply];
+        final int[] sideHistory = history[blueToMove ? BLUE : RED];
+
+        int count = 0;
+        for(int i=0; i<N_N; i++){
+            if( !board.isBlank(i) ) continue;
+
+            plyMoves[count] = i;
+            if(ordered){
+                int score;
+                if(i == ttMove) score = TT_MOVE_SCORE;
+                else if(i == killers[ply][0]) score = KILLER_ONE_SCORE;
+                else if(i == killers[ply][1]) score = KILLER_TWO_SCORE;
+                else {
+                    score = sideHistory[i] << 1;
+                    if(lastMove != TranspositionTable.NO_MOVE && adjacent[lastMove][i]) score |= 1;
+                }
+                plyScores[count] = score;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // returns the n-th move, moving the best remaining one forward first (lazy selection sort)
+    public int pick(int ply, int n, int count, boolean ordered){
+        final int[] plyMoves = moves[ply];
+        if(!ordered) return plyMoves[n];
+
+        final int[] plyScores = scores[ply];
+        int bestIndex = n;
+        for(int i=n+1; i<count; i++){
+            if(plyScores[i] > plyScores[bestIndex]) bestIndex = i;
+        }
+
+        if(bestIndex != n){
+            final int move = plyMoves[bestIndex];
+            final int score = plyScores[bestIndex];
+            plyMoves[bestIndex] = plyMoves[n];
+            plyScores[bestIndex] = plyScores[n];
+            plyMoves[n] = move;
+            plyScores[n] = score;
+        }
+        return plyMoves[n];
+    }
+
+    public void onCutoff(int ply, int move, boolean blueToMove, int remainingDepth, int ttMove){
+        if(move != ttMove && move != killers[ply][0]){
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        final int[] sideHistory = history[blueToMove ? BLUE : RED];
+        sideHistory[move] = Math.min(MAX_HISTORY, sideHistory[move] + remainingDepth * remainingDepth);
+    }
+
+}
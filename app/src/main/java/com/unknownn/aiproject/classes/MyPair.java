@@ -1,11 +0,0 @@
-package com.unknownn.aiproject.classes;
-
-public class MyPair<F,S> {
-    final F blue;
-    final S red;
-
-    public MyPair(F blue, S red) {
-        this.blue = blue;
-        this.red = red;
-    }
-}
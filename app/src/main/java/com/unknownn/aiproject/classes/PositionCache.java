@@ -0,0 +1,210 @@
+package com.unknownn.aiproject.classes;
+
+// Bounded zobrist hash -> packed entry (PositionStore.pack) map, no boxing and no strings.
+// When full, a CLOCK hand walks the slots and evicts the first entry that has no credit left.
+// A lookup gives an entry its credit back, deep and exact entries get more so they survive longer.
+// Starts small and doubles up to its maximum capacity, entries are only evicted once it can't grow anymore.
+// Not thread safe, the PositionStore calls it under its own lock
+public class PositionCache {
+
+    private static final int BYTES_PER_SLOT = 8 + 8 + 1; // a full capacity uses two slots per entry
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 20;
+    private static final int DEEP = 4; // an entry searched at least this deep gets one more credit
+
+    private final int maxCapacity;
+    private int capacity;
+    private long[] keys;
+    private long[] entries; // NO_ENTRY for an empty slot
+    private byte[] credits;
+    private int mask;
+    private int size = 0;
+    private int hand = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public PositionCache(int capacity) {
+        this(capacity, capacity);
+    }
+
+    public PositionCache(int initialCapacity, int maxCapacity) {
+        this.maxCapacity = Math.max(1, maxCapacity);
+        allocate(Math.max(1, Math.min(initialCapacity, this.maxCapacity)));
+    }
+
+    // at most about this fraction of the heap the app can still grow into, starting from room for expectedEntries
+    public static PositionCache forAvailableHeap(double fraction, int expectedEntries){
+        final Runtime runtime = Runtime.getRuntime();
+        final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        final long slots = Long.highestOneBit(Math.max(1, (long)(available * fraction) / BYTES_PER_SLOT));
+        final int maxCapacity = (int)Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, slots / 2)); // slots stay a power of two
+        return new PositionCache(Math.max(MIN_CAPACITY, expectedEntries), maxCapacity);
+    }
+
+    // entries it holds before growing or evicting
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // counts as a hit or a miss and refreshes the entry
+    public long get(long key){
+        final int slot = find(key);
+        if(slot < 0){
+            misses++;
+            return PositionStore.NO_ENTRY;
+        }
+
+        hits++;
+        credits[slot] = creditFor(entries[slot]);
+        return entries[slot];
+    }
+
+    // same as get without touching the counters or the credit
+    public long peek(long key){
+        final int slot = find(key);
+        return slot < 0 ? PositionStore.NO_ENTRY : entries[slot];
+    }
+
+    public void put(long key, long entry){
+        int slot = find(key);
+        if(slot < 0){
+            if(size == capacity){
+                if(capacity < maxCapacity) grow();
+                else evict();
+            }
+
+            slot = slot(key);
+            while (entries[slot] != PositionStore.NO_ENTRY) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            size++;
+        }
+
+        entries[slot] = entry;
+        credits[slot] = creditFor(entry);
+    }
+
+    public void clear(){
+        for(int i=0; i<=mask; i++){
+            entries[i] = PositionStore.NO_ENTRY;
+            credits[i] = 0;
+        }
+        size = 0;
+        hand = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PositionCache: "+size+"/"+capacity+" (max "+maxCapacity+"), hits: "+hits+", misses: "+misses+", evictions: "+evictions;
+    }
+
+    private void allocate(int capacity){
+        this.capacity = capacity;
+
+        int slots = 2;
+        while (slots < 2 * capacity) slots <<= 1;
+        keys = new long[slots];
+        entries = new long[slots];
+        credits = new byte[slots];
+        mask = slots - 1;
+        size = 0;
+        hand = 0;
+    }
+
+    private void grow(){
+        final long[] oldKeys = keys;
+        final long[] oldEntries = entries;
+        final byte[] oldCredits = credits;
+
+        allocate((int)Math.min(maxCapacity, 2L * capacity));
+        for(int i=0; i<oldEntries.length; i++){
+            if(oldEntries[i] == PositionStore.NO_ENTRY) continue;
+
+            int slot = slot(oldKeys[i]);
+            while (entries[slot] != PositionStore.NO_ENTRY) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            entries[slot] = oldEntries[i];
+            credits[slot] = oldCredits[i];
+            size++;
+        }
+    }
+
+    private static byte creditFor(long entry){
+        int credit = 1;
+        if(PositionStore.getBound(entry) == TranspositionTable.EXACT) credit++;
+        if(PositionStore.getDepth(entry) >= DEEP) credit++;
+        return (byte)credit;
+    }
+
+    private int find(long key){
+        for(int i = slot(key); entries[i] != PositionStore.NO_ENTRY; i = (i + 1) & mask){
+            if(keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private int slot(long key){
+        return (int)(key ^ (key >>> 32)) & mask;
+    }
+
+    private void evict(){
+        while (true){
+            final int slot = hand;
+            hand = (hand + 1) & mask;
+
+            if(entries[slot] == PositionStore.NO_ENTRY) continue;
+            if(credits[slot] > 0){
+                credits[slot]--;
+                continue;
+            }
+
+            remove(slot);
+            evictions++;
+            return;
+        }
+    }
+
+    // backward shift, so the probe chains stay unbroken without tombstones
+    private void remove(int slot){
+        int hole = slot;
+        int next = (hole + 1) & mask;
+
+        while (entries[next] != PositionStore.NO_ENTRY){
+            final int home = slot(keys[next]);
+            // next may fill the hole only if its home is not in (hole, next]
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                keys[hole] = keys[next];
+                entries[hole] = entries[next];
+                credits[hole] = credits[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        entries[hole] = PositionStore.NO_ENTRY;
+        credits[hole] = 0;
+        size--;
+    }
+
+}
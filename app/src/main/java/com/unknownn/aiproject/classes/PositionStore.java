@@ -0,0 +1,318 @@
+package com.unknownn.aiproject.classes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+
+// Persistent root scores of the alpha-beta search, keyed by the zobrist hash of the position.
+// The file is an open addressing hash table of key -> packed entry, memory mapped, one slot per position.
+// The heap only keeps a bounded PositionCache in front of it, a lookup it misses probes the mapped table.
+// A better entry overwrites the position's slot, so the file grows with the number of positions only.
+// Only one store per file is loaded at a time, a new one waits in load until the old one is closed
+public class PositionStore {
+
+    public static final long NO_ENTRY = 0; // bound is never 0, so a real entry never is either
+
+    private static final int MAGIC = 0x48455853; // HEXS
+    private static final int VERSION = 3;
+    private static final int APPEND_LOG_VERSION = 2; // records one after the other, read once and converted
+
+    // header: magic(4) | version(4) | count(4) | slots(4)
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    private static final int SLOTS_OFFSET = 12;
+
+    // slot: key(8) | entry(8), NO_ENTRY for an empty one. The key is written first so a slot is never half used
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_SLOTS = 2048; // a power of two, doubled when half full
+    private static final double HEAP_FRACTION = 0.05; // most the cache grows to when no capacity is given
+
+    // v2 record: key(8) | score(4) | depth(1) | bound(1) | evaluator version(1) | completed(1)
+    private static final int V2_RECORD_SIZE = 16;
+
+    private static final Set<String> loadedFiles = new HashSet<>();
+
+    private final File file;
+    private RandomAccessFile randomAccessFile = null;
+    private FileChannel channel = null;
+    private MappedByteBuffer buffer = null;
+    private int slots = 0;
+    private int count = 0;
+    private final int cacheCapacity;
+    private PositionCache cache = null;
+    private volatile boolean loaded = false;
+
+    public PositionStore(File file) {
+        this(file, 0);
+    }
+
+    // at most cacheCapacity positions in heap, 0 to size it from the available heap
+    public PositionStore(File file, int cacheCapacity) {
+        this.file = file;
+        this.cacheCapacity = cacheCapacity;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // maps the file, call it off the main thread. Lookups miss until it is done
+    public synchronized void load() throws IOException {
+        if(loaded) return;
+
+        acquire(file); // an activity recreated right away, the old writer may still be flushing
+        try{
+            open();
+        }catch (IOException e){
+            release(file);
+            throw e;
+        }
+    }
+
+    private void open() throws IOException {
+        mapFile();
+
+        if(!isTable()){ // new, older or unknown format, start over with an empty table
+            final long[][] old = isAppendLog() ? readAppendLog() : null;
+            final int records = (old == null) ? 0 : old[0].length;
+
+            closeFile();
+            int newSlots = INITIAL_SLOTS;
+            while (newSlots < 2 * records) newSlots <<= 1;
+            createTable(file, newSlots);
+            mapFile();
+
+            for(int i=0; i<records; i++) write(old[0][i], old[1][i]);
+            buffer.putInt(COUNT_OFFSET, count);
+        }
+
+        cache = (cacheCapacity > 0) ? new PositionCache(cacheCapacity) : PositionCache.forAvailableHeap(HEAP_FRACTION, count);
+
+        loaded = true;
+    }
+
+    private void mapFile() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(HEADER_SIZE, channel.size()));
+        count = buffer.getInt(COUNT_OFFSET);
+        slots = buffer.getInt(SLOTS_OFFSET);
+    }
+
+    private boolean isTable(){
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                && slots > 0 && Integer.bitCount(slots) == 1 && count >= 0 && 2 * count <= slots
+                && buffer.capacity() >= HEADER_SIZE + (long)slots * SLOT_SIZE;
+    }
+
+    private boolean isAppendLog(){
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == APPEND_LOG_VERSION;
+    }
+
+    private void closeFile() throws IOException {
+        channel.close();
+        randomAccessFile.close();
+        buffer = null;
+    }
+
+    private static void createTable(File target, int slots) throws IOException {
+        try(RandomAccessFile created = new RandomAccessFile(target, "rw")){
+            created.setLength(0);
+            created.setLength(HEADER_SIZE + (long)slots * SLOT_SIZE); // zeroed, every slot empty
+            created.writeInt(MAGIC);
+            created.writeInt(VERSION);
+            created.writeInt(0);
+            created.writeInt(slots);
+        }
+    }
+
+    // keys and entries of an append-only v2 file, the last better record of a position wins when converted
+    private long[][] readAppendLog(){
+        final long noOfRecords = (buffer.capacity() - HEADER_SIZE) / V2_RECORD_SIZE;
+        final int records = (int)Math.max(0, Math.min(buffer.getInt(COUNT_OFFSET), noOfRecords));
+
+        final long[] keys = new long[records];
+        final long[] entries = new long[records];
+        for(int i=0; i<records; i++){
+            final int position = HEADER_SIZE + i * V2_RECORD_SIZE;
+            keys[i] = buffer.getLong(position);
+            entries[i] = pack(buffer.getInt(position + 8),
+                    buffer.get(position + 12) & 0xFF,
+                    buffer.get(position + 13) & 0xFF,
+                    buffer.get(position + 14) & 0xFF,
+                    buffer.get(position + 15) != 0);
+        }
+        return new long[][]{keys, entries};
+    }
+
+    // positions in the file, one slot each
+    public int size() {
+        return count;
+    }
+
+    // hit / miss / eviction counters, null before the first load
+    public PositionCache getCache() {
+        return cache;
+    }
+
+    // packed entry (see pack) or NO_ENTRY. A miss in the cache reads the table and keeps what it found
+    public long get(long key){
+        if(!loaded) return NO_ENTRY;
+
+        synchronized (this){
+            if(!loaded) return NO_ENTRY;
+
+            final long cached = cache.get(key);
+            if(cached != NO_ENTRY) return cached;
+
+            final long entry = buffer.getLong(slotPosition(findSlot(key)) + 8);
+            if(entry != NO_ENTRY) cache.put(key, entry);
+            return entry;
+        }
+    }
+
+    // kept only if it is better than the entry already stored for the position
+    public synchronized void put(long key, long entry) throws IOException {
+        if(!loaded) return;
+
+        if(write(key, entry)) cache.put(key, entry);
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    // same as put for each, the count is written once. Returns how many were taken, 0 while not loaded
+    public synchronized int putAll(long[] keys, long[] entries, int size) throws IOException {
+        if(!loaded) return 0;
+
+        for(int i=0; i<size; i++){
+            if(write(keys[i], entries[i])) cache.put(keys[i], entries[i]);
+        }
+        buffer.putInt(COUNT_OFFSET, count);
+        return size;
+    }
+
+    // into the table if it is better than what the position has there, the caller writes the count
+    private boolean write(long key, long entry) throws IOException {
+        int position = slotPosition(findSlot(key));
+        final long old = buffer.getLong(position + 8);
+        if(old != NO_ENTRY && !isBetter(entry, old)) return false;
+
+        if(old == NO_ENTRY){
+            if(2 * (count + 1) > slots){
+                grow();
+                position = slotPosition(findSlot(key));
+            }
+            buffer.putLong(position, key);
+            count++;
+        }
+        buffer.putLong(position + 8, entry);
+        return true;
+    }
+
+    // the key's slot, or the empty slot where it would go
+    private int findSlot(long key){
+        final int mask = slots - 1;
+        int slot = (int)(key ^ (key >>> 32)) & mask;
+        while (true){
+            final int position = slotPosition(slot);
+            if(buffer.getLong(position + 8) == NO_ENTRY || buffer.getLong(position) == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int slotPosition(int slot){
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // rehashes into a table twice as big next to the file, then replaces the file with it
+    private void grow() throws IOException {
+        final File grown = new File(file.getPath() + ".grow");
+        final int newSlots = slots * 2;
+        createTable(grown, newSlots);
+
+        try(RandomAccessFile target = new RandomAccessFile(grown, "rw")){
+            final MappedByteBuffer table = target.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)newSlots * SLOT_SIZE);
+            final int mask = newSlots - 1;
+
+            for(int slot=0; slot<slots; slot++){
+                final long entry = buffer.getLong(slotPosition(slot) + 8);
+                if(entry == NO_ENTRY) continue;
+
+                final long key = buffer.getLong(slotPosition(slot));
+                int newSlot = (int)(key ^ (key >>> 32)) & mask;
+                while (table.getLong(slotPosition(newSlot) + 8) != NO_ENTRY) newSlot = (newSlot + 1) & mask;
+                table.putLong(slotPosition(newSlot), key);
+                table.putLong(slotPosition(newSlot) + 8, entry);
+            }
+            table.putInt(COUNT_OFFSET, count);
+            table.force();
+        }
+
+        buffer.force();
+        closeFile();
+        if(!grown.renameTo(file)) throw new IOException("Could not replace "+file.getName());
+        mapFile();
+    }
+
+    // entry layout: score(32) | depth(8) | bound(8) | evaluator version(8) | completed(1)
+    // bound is TranspositionTable.EXACT / LOWER / UPPER, depth is the number of plies searched below the position
+    public static long pack(int score, int depth, int bound, int evaluatorVersion, boolean completed){
+        return (score & 0xFFFFFFFFL)
+                | ((long)(depth & 0xFF) << 32)
+                | ((long)(bound & 0xFF) << 40)
+                | ((long)(evaluatorVersion & 0xFF) << 48)
+                | (completed ? 1L << 56 : 0);
+    }
+
+    public static int getScore(long entry){ return (int)entry; }
+    public static int getDepth(long entry){ return (int)(entry >>> 32) & 0xFF; }
+    public static int getBound(long entry){ return (int)(entry >>> 40) & 0xFF; }
+    public static int getEvaluatorVersion(long entry){ return (int)(entry >>> 48) & 0xFF; }
+    public static boolean isCompleted(long entry){ return ((entry >>> 56) & 1) == 1; }
+
+    // completed first, then the current evaluator, then deeper, then exact over a bound
+    public static boolean isBetter(long entry, long old){
+        if(isCompleted(entry) != isCompleted(old)) return isCompleted(entry);
+        if(getEvaluatorVersion(entry) != getEvaluatorVersion(old)) return true; // the newer one
+        if(getDepth(entry) != getDepth(old)) return getDepth(entry) > getDepth(old);
+        return getBound(entry) == TranspositionTable.EXACT && getBound(old) != TranspositionTable.EXACT;
+    }
+
+    public synchronized void close(){
+        if(!loaded) return;
+        loaded = false;
+
+        try{
+            buffer.force();
+            closeFile();
+        }catch (IOException ignored){}
+
+        cache.clear();
+        release(file);
+    }
+
+    private static void acquire(File file) throws IOException {
+        synchronized (loadedFiles){
+            while (!loadedFiles.add(file.getAbsolutePath())){
+                try{
+                    loadedFiles.wait();
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while "+file.getName()+" is still open");
+                }
+            }
+        }
+    }
+
+    private static void release(File file){
+        synchronized (loadedFiles){
+            loadedFiles.remove(file.getAbsolutePath());
+            loadedFiles.notifyAll();
+        }
+    }
+
+}
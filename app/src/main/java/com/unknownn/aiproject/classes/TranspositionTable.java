@@ -0,0 +1,97 @@
+package com.unknownn.aiproject.classes;
+
+// Fixed size, bucketed transposition table shared by all search threads.
+// Each entry is two longs: key^data and data. A torn write from another thread fails the key check and reads as a miss
+public class TranspositionTable {
+
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    public static final int NO_MOVE = 0xFF;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int DEFAULT_ENTRIES = 1 << 17; // 2MB
+
+    // data layout: score(32) | depth(8) | flag(2) | move(8) | age(8)
+    private static final int DEPTH_SHIFT = 32;
+    private static final int FLAG_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int AGE_SHIFT = 50;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private volatile int age = 0;
+
+    public TranspositionTable() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    // noOfEntries must be a power of two
+    public TranspositionTable(int noOfEntries) {
+        keys = new long[noOfEntries];
+        data = new long[noOfEntries];
+        bucketMask = (noOfEntries / BUCKET_SIZE) - 1;
+    }
+
+    // called once per bot move so that old entries are replaced first
+    public void newSearch(){
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear(){
+        for(int i=0; i<keys.length; i++){
+            keys[i] = 0;
+            data[i] = 0;
+        }
+    }
+
+    // returns 0 when nothing is stored for the key
+    public long probe(long key){
+        final int start = ((int)key & bucketMask) * BUCKET_SIZE;
+        for(int i=start; i<start + BUCKET_SIZE; i++){
+            final long d = data[i];
+            if( (keys[i] ^ d) == key && d != 0) return d;
+        }
+        return 0;
+    }
+
+    public void store(long key, int depth, int flag, int score, int move){
+        final int start = ((int)key & bucketMask) * BUCKET_SIZE;
+        final long newData = pack(depth, flag, score, move, age);
+
+        int replace = start;
+        int replaceValue = Integer.MAX_VALUE;
+
+        for(int i=start; i<start + BUCKET_SIZE; i++){
+            final long d = data[i];
+            if(d == 0 || (keys[i] ^ d) == key){ // empty or same position
+                replace = i;
+                break;
+            }
+
+            // prefer replacing entries from older searches, then the shallow ones
+            final int value = ( (getAge(d) == age) ? 256 : 0 ) + getDepth(d);
+            if(value < replaceValue){
+                replaceValue = value;
+                replace = i;
+            }
+        }
+
+        data[replace] = newData;
+        keys[replace] = key ^ newData;
+    }
+
+    private static long pack(int depth, int flag, int score, int move, int age){
+        return (score & 0xFFFFFFFFL)
+                | ((long)(depth & 0xFF) << DEPTH_SHIFT)
+                | ((long)(flag & 0x3) << FLAG_SHIFT)
+                | ((long)(move & 0xFF) << MOVE_SHIFT)
+                | ((long)(age & 0xFF) << AGE_SHIFT);
+    }
+
+    public static int getScore(long data){ return (int)data; }
+    public static int getDepth(long data){ return (int)(data >>> DEPTH_SHIFT) & 0xFF; }
+    public static int getFlag(long data){ return (int)(data >>> FLAG_SHIFT) & 0x3; }
+    public static int getMove(long data){ return (int)(data >>> MOVE_SHIFT) & 0xFF; }
+    private static int getAge(long data){ return (int)(data >>> AGE_SHIFT) & 0xFF; }
+
+}
@@ -0,0 +1,142 @@
+package com.unknownn.aiproject.classes;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Collects scores to save and writes them to the PositionStore in batches from one background thread,
+// so the search threads only copy two numbers. Same position twice before a flush is written once
+public class WriteBehindQueue {
+
+    private static final int BATCH_SIZE = 64; // flush right away once this many are pending
+    private static final long FLUSH_DELAY = 2_000L; // otherwise this long after the first one
+    private static final int CAPACITY = 1024; // more than this pending are dropped
+
+    private final PositionStore store;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+
+    private final Object lock = new Object();
+    private long[] pendingKeys = new long[CAPACITY];
+    private long[] pendingEntries = new long[CAPACITY];
+    private int pendingSize = 0;
+    private long[] flushingKeys = new long[CAPACITY];
+    private long[] flushingEntries = new long[CAPACITY];
+    private boolean flushRequested = false;
+    private boolean closed = false;
+
+    private long flushedCount = 0;
+    private long droppedCount = 0;
+
+    public WriteBehindQueue(PositionStore store) {
+        this.store = store;
+    }
+
+    // entry as packed by PositionStore.pack
+    public void offer(long key, long entry){
+        synchronized (lock){
+            if(closed){
+                droppedCount++;
+                return;
+            }
+
+            for(int i=0; i<pendingSize; i++){
+                if(pendingKeys[i] == key){ // coalesce, the store would keep the better one anyway
+                    if(PositionStore.isBetter(entry, pendingEntries[i])) pendingEntries[i] = entry;
+                    return;
+                }
+            }
+
+            if(pendingSize == CAPACITY){
+                droppedCount++;
+                return;
+            }
+
+            pendingKeys[pendingSize] = key;
+            pendingEntries[pendingSize] = entry;
+            pendingSize++;
+
+            if(pendingSize >= BATCH_SIZE) requestFlush(0);
+            else if(pendingSize == 1) requestFlush(FLUSH_DELAY);
+        }
+    }
+
+    // writes whatever is pending soon, without waiting for the batch to fill
+    public void flush(){
+        synchronized (lock){
+            if(!closed) requestFlush(0);
+        }
+    }
+
+    // flushes the rest and closes the store after it
+    public void close(){
+        synchronized (lock){
+            if(closed) return;
+            closed = true;
+        }
+
+        writer.execute(() -> {
+            writePending();
+            store.close();
+        });
+        writer.shutdown();
+    }
+
+    public long getFlushedCount() {
+        synchronized (lock){
+            return flushedCount;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock){
+            return droppedCount;
+        }
+    }
+
+    // lock must be held
+    private void requestFlush(long delay){
+        if(flushRequested && delay > 0) return; // one is already on its way
+        flushRequested = true;
+
+        try{
+            writer.schedule(this::writePending, delay, TimeUnit.MILLISECONDS);
+        }catch (RejectedExecutionException ignored){}
+    }
+
+    // only on the writer thread
+    private void writePending(){
+        final long[] keys;
+        final long[] entries;
+        final int size;
+
+        synchronized (lock){
+            flushRequested = false;
+            if(pendingSize == 0) return;
+
+            // swap the buffers so offers can continue while this batch is written
+            keys = pendingKeys;
+            entries = pendingEntries;
+            size = pendingSize;
+            pendingKeys = flushingKeys;
+            pendingEntries = flushingEntries;
+            flushingKeys = keys;
+            flushingEntries = entries;
+            pendingSize = 0;
+        }
+
+        int written;
+        try{
+            written = store.putAll(keys, entries, size);
+        }catch (IOException e){
+            written = 0;
+        }
+
+        synchronized (lock){
+            flushedCount += written;
+            droppedCount += size - written;
+        }
+    }
+
+}
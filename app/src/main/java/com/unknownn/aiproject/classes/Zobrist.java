@@ -0,0 +1,39 @@
+package com.unknownn.aiproject.classes;
+
+import java.util.SplittableRandom;
+
+// Random keys for incremental 64 bit position hashing. The seed is fixed so keys are stable between runs
+public class Zobrist {
+
+    public static final int MAX_N = 13;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private static final long[] BLUE_KEYS = new long[MAX_N * MAX_N];
+    private static final long[] RED_KEYS = new long[MAX_N * MAX_N];
+    private static final long[] SIZE_KEYS = new long[MAX_N + 1];
+    public static final long BLUE_TO_MOVE;
+
+    static {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        for(int i=0; i<BLUE_KEYS.length; i++){
+            BLUE_KEYS[i] = random.nextLong();
+            RED_KEYS[i] = random.nextLong();
+        }
+        for(int i=0; i<SIZE_KEYS.length; i++){
+            SIZE_KEYS[i] = random.nextLong();
+        }
+        BLUE_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    // key of the empty board, so that same cell index on different sizes doesn't collide
+    public static long sizeKey(int N){
+        return SIZE_KEYS[N];
+    }
+
+    public static long cellKey(int index, CellState.MyColor color){
+        return (color == CellState.MyColor.BLUE) ? BLUE_KEYS[index] : RED_KEYS[index];
+    }
+
+}
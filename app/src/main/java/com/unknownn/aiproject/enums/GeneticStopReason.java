@@ -0,0 +1,6 @@
+package com.unknownn.aiproject.enums;
+
+// why the GeneticApplier stopped evolving, see GeneticListener.onStopped
+public enum GeneticStopReason {
+    TIME_UP, STAGNATED, CONVERGED, MAX_GENERATIONS, MOVE_NOW, CANCELLED
+}
@@ -1,5 +1,5 @@
 package com.unknownn.aiproject.enums;
 
 public enum PredictionAlgo {
-    ALPHA_BETA_PRUNING, GENETIC_ALGO
+    ALPHA_BETA_PRUNING, GENETIC_ALGO, MCTS
 }
@@ -1,6 +1,7 @@
 package com.unknownn.aiproject.listener;
 
 import com.unknownn.aiproject.classes.Cell;
+import com.unknownn.aiproject.enums.GeneticStopReason;
 
 import java.util.List;
 
@@ -11,4 +12,5 @@ public interface GeneticListener {
     void onFinished(Pair<Integer,Integer> xy);
     void onDrawRequest(List<Cell> selectedBoard);
     void onError(String message, boolean changeToAlphaBeta);
+    void onStopped(GeneticStopReason reason, int generations); // before the result, only when it evolved
 }
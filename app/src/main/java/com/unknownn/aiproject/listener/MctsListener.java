@@ -0,0 +1,10 @@
+package com.unknownn.aiproject.listener;
+
+import kotlin.Pair;
+
+public interface MctsListener {
+    void onProgress(int progress);
+    void onFinished(Pair<Integer,Integer> xy);
+    void onError(String message, boolean changeToAlphaBeta);
+    void onCellValueUpdated(int x, int y, int visits);
+}
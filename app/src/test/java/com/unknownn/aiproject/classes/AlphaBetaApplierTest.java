@@ -0,0 +1,34 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AlphaBetaApplierTest {
+
+    private static final String POSITION = "LLLLLLLBLLLRRRLLLBLLLLLLL";
+
+    @Test
+    public void storedUpperBound_belowSharedAlpha_failsLowWithoutAMove() {
+        final BitBoard root = Helper.convertStringToBoard(POSITION);
+        final int index = 6;
+        final int depthLimit = 2;
+
+        final BitBoard afterMove = root.copy();
+        afterMove.makeMove(index, CellState.MyColor.BLUE);
+        final long key = afterMove.getHash(); // user to move
+
+        AlphaBetaApplier.destroy();
+        final AlphaBetaApplier applier = AlphaBetaApplier.getInstance();
+        final TranspositionTable table = applier.getTranspositionTable();
+        table.store(key, depthLimit, TranspositionTable.UPPER, -50, TranspositionTable.NO_MOVE); // as a helper thread would
+
+        final int score = applier.searchRootMoveLate(root, index, depthLimit, 0);
+
+        assertNotEquals(Integer.MAX_VALUE, score);
+        assertTrue(score <= -1); // no better than the root move already proven
+        final long entry = table.probe(key);
+        assertNotEquals(Integer.MAX_VALUE, TranspositionTable.getScore(entry));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.getFlag(entry));
+    }
+}
@@ -0,0 +1,58 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * getBoardScore runs in the search hot loop, it must not allocate once the thread's scratch buffers exist.
+ */
+public class CalculatorAllocationTest {
+
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void getBoardScore_doesNotAllocate() {
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        final BitBoard[] boards = randomBoards(7, 200);
+
+        // warm up: creates the scratch buffers and lets the JIT settle
+        int checksum = 0;
+        for(int i=0; i<20_000; i++) checksum += Calculator.getBoardScore(boards[i % boards.length]);
+
+        // the JIT can still be compiling after the warm up and allocate on this thread, so the quietest round counts
+        long fewest = Long.MAX_VALUE;
+        for(int round=0; round<ROUNDS && fewest > 0; round++){
+            final long before = threadBean.getThreadAllocatedBytes(threadId);
+            for(int i=0; i<5_000; i++) checksum += Calculator.getBoardScore(boards[i % boards.length]);
+            final long after = threadBean.getThreadAllocatedBytes(threadId);
+            fewest = Math.min(fewest, after - before);
+        }
+
+        assertNotEquals(Integer.MIN_VALUE, checksum); // keeps the calls alive
+        assertEquals(0, fewest);
+    }
+
+    private static BitBoard[] randomBoards(int N, int count){
+        final SplittableRandom random = new SplittableRandom(42);
+        final BitBoard[] boards = new BitBoard[count];
+
+        for(int b=0; b<count; b++){
+            final BitBoard board = new BitBoard(N);
+            final double fill = random.nextDouble();
+
+            for(int i=0; i<N*N; i++){
+                if(random.nextDouble() >= fill) continue;
+                board.makeMove(i, random.nextBoolean() ? CellState.MyColor.RED : CellState.MyColor.BLUE);
+            }
+            boards[b] = board;
+        }
+        return boards;
+    }
+}
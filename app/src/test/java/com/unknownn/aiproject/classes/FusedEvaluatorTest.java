@@ -0,0 +1,32 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * The fused evaluator replaces the separate sweeps only if it gives exactly the same score.
+ */
+public class FusedEvaluatorTest {
+
+    @Test
+    public void fusedScore_matchesSweeps() {
+        final SplittableRandom random = new SplittableRandom(7);
+
+        for(int t=0; t<20_000; t++){
+            final int N = 3 + random.nextInt(9); // 3 to 11
+            final BitBoard board = new BitBoard(N);
+            final double fill = random.nextDouble();
+
+            for(int i=0; i<N*N; i++){
+                if(random.nextDouble() >= fill) continue;
+                board.makeMove(i, random.nextBoolean() ? CellState.MyColor.RED : CellState.MyColor.BLUE);
+            }
+
+            assertEquals(Helper.convertBoardToString(board),
+                    Calculator.getBoardScoreSweeps(board), Calculator.getBoardScoreFused(board));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.unknownn.aiproject.classes;
+
+import com.unknownn.aiproject.enums.GeneticStopReason;
+import com.unknownn.aiproject.listener.GeneticListener;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import kotlin.Pair;
+
+import static org.junit.Assert.*;
+
+public class GeneticApplierTest {
+
+    private static final String POSITION = "LLLLLLLLLLLLLLLLLBLLLLLRRRLLLLLBLLLLLLLLLLLLLLLLL";
+
+    @Test
+    public void sameSeed_sameMove_onABlankCell() {
+        final Pair<Integer, Integer> one = predict(7L);
+        final Pair<Integer, Integer> two = predict(7L);
+
+        assertEquals(one, two);
+        assertTrue(Helper.convertStringToBoard(POSITION).isBlank(one.getFirst() * 7 + one.getSecond()));
+    }
+
+    @Test
+    public void sameSeed_sameMove_whateverTheParallelism() {
+        assertEquals(predict(11L, 1), predict(11L, 4));
+    }
+
+    @Test
+    public void islands_playABlankCell() {
+        final AtomicReference<Pair<Integer, Integer>> result = new AtomicReference<>();
+        GeneticApplier.destroy();
+        GeneticApplier.getInstance()
+                .setSeed(5L)
+                .setIslands(3, 6, 4)
+                .setGeneticListener(listener(result, new AtomicReference<>()))
+                .predict(Helper.convertStringToBoard(POSITION), null);
+
+        final Pair<Integer, Integer> move = result.get();
+        assertTrue(Helper.convertStringToBoard(POSITION).isBlank(move.getFirst() * 7 + move.getSecond()));
+    }
+
+    @Test
+    public void stopsWhenTheBestStopsImproving() {
+        final AtomicReference<GeneticStopReason> reason = new AtomicReference<>();
+        GeneticApplier.destroy();
+        GeneticApplier.getInstance()
+                .setSeed(9L)
+                .setConvergence(5, 0)
+                .setGeneticListener(new GeneticListener() {
+                    @Override
+                    public void onProgress(int progress) {}
+
+                    @Override
+                    public void onFinished(Pair<Integer, Integer> xy) {}
+
+                    @Override
+                    public void onDrawRequest(List<Cell> selectedBoard) {}
+
+                    @Override
+                    public void onError(String message, boolean changeToAlphaBeta) {}
+
+                    @Override
+                    public void onStopped(GeneticStopReason stopReason, int generations) {
+                        reason.set(stopReason);
+                        assertTrue(generations >= 5);
+                    }
+                })
+                .predict(Helper.convertStringToBoard(POSITION), null);
+
+        assertEquals(GeneticStopReason.STAGNATED, reason.get());
+        assertEquals(GeneticStopReason.STAGNATED, GeneticApplier.getInstance().getLastStopReason());
+    }
+
+    @Test
+    public void drawnSolution_isAFullPermutation() {
+        final AtomicReference<List<Cell>> drawn = new AtomicReference<>();
+        GeneticApplier.destroy();
+        GeneticApplier.getInstance()
+                .setSeed(3L)
+                .setGeneticListener(listener(new AtomicReference<>(), drawn))
+                .predict(Helper.convertStringToBoard(POSITION), null);
+
+        final BitBoard board = Helper.convertStringToBoard(POSITION);
+        final boolean[] seen = new boolean[49];
+        int red = 0;
+        for(Cell cell : drawn.get()){
+            final int index = cell.x * 7 + cell.y;
+            assertTrue(board.isBlank(index));
+            assertFalse(seen[index]);
+            seen[index] = true;
+            if(cell.isRed()) red++;
+        }
+        assertEquals(board.getEmptyCount() - 1, drawn.get().size()); // the blue cell that was played is taken out
+        assertEquals(board.getEmptyCount() / 2, red);
+    }
+
+    private static Pair<Integer, Integer> predict(long seed){
+        return predict(seed, 1);
+    }
+
+    private static Pair<Integer, Integer> predict(long seed, int parallelism){
+        final AtomicReference<Pair<Integer, Integer>> result = new AtomicReference<>();
+        GeneticApplier.destroy(); // no solution of an earlier call
+        GeneticApplier.getInstance()
+                .setSeed(seed)
+                .setParallelism(parallelism)
+                .setGeneticListener(listener(result, new AtomicReference<>()))
+                .predict(Helper.convertStringToBoard(POSITION), null);
+        return result.get();
+    }
+
+    private static GeneticListener listener(AtomicReference<Pair<Integer, Integer>> result,
+                                            AtomicReference<List<Cell>> drawn){
+        return new GeneticListener() {
+            @Override
+            public void onProgress(int progress) {}
+
+            @Override
+            public void onError(String message, boolean changeToAlphaBeta) {}
+
+            @Override
+            public void onStopped(GeneticStopReason reason, int generations) {}
+
+            @Override
+            public void onDrawRequest(List<Cell> selectedBoard) { drawn.set(selectedBoard); }
+
+            @Override
+            public void onFinished(Pair<Integer, Integer> xy) { result.set(xy); }
+        };
+    }
+}
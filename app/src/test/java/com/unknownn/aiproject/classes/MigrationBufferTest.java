@@ -0,0 +1,31 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MigrationBufferTest {
+
+    @Test
+    public void migrantGoesToTheNextIsland_once() {
+        final MigrationBuffer buffer = new MigrationBuffer(3);
+        final int[] chromosome = {4, 2, 7};
+        buffer.emigrate(2, chromosome, 12);
+        chromosome[0] = 9; // the island keeps changing its own
+
+        assertNull(buffer.immigrate(2));
+        final MigrationBuffer.Migrant migrant = buffer.immigrate(0); // the ring wraps around
+        assertArrayEquals(new int[]{4, 2, 7}, migrant.chromosome);
+        assertEquals(12, migrant.fitness);
+        assertNull(buffer.immigrate(0));
+    }
+
+    @Test
+    public void newerMigrant_replacesOneNotTakenYet() {
+        final MigrationBuffer buffer = new MigrationBuffer(2);
+        buffer.emigrate(0, new int[]{1}, 1);
+        buffer.emigrate(0, new int[]{2}, 2);
+
+        assertEquals(2, buffer.immigrate(1).fitness);
+    }
+}
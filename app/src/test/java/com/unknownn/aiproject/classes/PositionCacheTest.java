@@ -0,0 +1,55 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PositionCacheTest {
+
+    private static final long STEP = 0x9E3779B97F4A7C15L;
+
+    @Test
+    public void staysWithinCapacity_andCounts() {
+        final PositionCache cache = new PositionCache(100);
+        for(long key=1; key<=1000; key++) cache.put(key * STEP, entry(3, TranspositionTable.UPPER));
+
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictions());
+
+        int found = 0;
+        for(long key=1; key<=1000; key++){
+            if(cache.get(key * STEP) != PositionStore.NO_ENTRY) found++;
+        }
+        assertEquals(100, found); // every entry still left is reachable after the shifts
+        assertEquals(100, cache.getHits());
+        assertEquals(900, cache.getMisses());
+    }
+
+    @Test
+    public void deepAndExactEntries_surviveLonger() {
+        final PositionCache cache = new PositionCache(100);
+        for(long key=1; key<=50; key++) cache.put(key * STEP, entry(6, TranspositionTable.EXACT));
+        for(long key=51; key<=150; key++) cache.put(key * STEP, entry(1, TranspositionTable.UPPER));
+
+        assertEquals(50, cache.getEvictions());
+        for(long key=1; key<=50; key++) assertNotEquals(PositionStore.NO_ENTRY, cache.peek(key * STEP)); // older, but kept
+    }
+
+    @Test
+    public void growsUpToItsMaximum_beforeEvicting() {
+        final PositionCache cache = new PositionCache(16, 100);
+        for(long key=1; key<=100; key++) cache.put(key * STEP, entry(3, TranspositionTable.UPPER));
+
+        assertEquals(100, cache.getCapacity());
+        assertEquals(0, cache.getEvictions());
+        for(long key=1; key<=100; key++) assertNotEquals(PositionStore.NO_ENTRY, cache.peek(key * STEP)); // rehashed
+
+        cache.put(101 * STEP, entry(3, TranspositionTable.UPPER));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(100, cache.size());
+    }
+
+    private static long entry(int depth, int bound){
+        return PositionStore.pack(7, depth, bound, 1, true);
+    }
+}
@@ -0,0 +1,139 @@
+package com.unknownn.aiproject.classes;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class PositionStoreTest {
+
+    private static final long STEP = 0x9E3779B97F4A7C15L;
+
+    @Test
+    public void entries_surviveReopening() throws IOException {
+        final File file = File.createTempFile("positions", ".bin");
+        file.deleteOnExit();
+
+        final PositionStore store = new PositionStore(file);
+        assertEquals(PositionStore.NO_ENTRY, store.get(STEP)); // not loaded yet
+
+        store.load();
+        for(long key=1; key<=5000; key++) store.put(key * STEP, entry((int)key - 2500, 3, TranspositionTable.EXACT));
+        store.close();
+
+        final PositionStore reopened = new PositionStore(file);
+        reopened.load();
+        assertEquals(5000, reopened.size());
+        for(long key=1; key<=5000; key++) assertEquals(entry((int)key - 2500, 3, TranspositionTable.EXACT), reopened.get(key * STEP));
+        assertEquals(PositionStore.NO_ENTRY, reopened.get(42L));
+        reopened.close();
+    }
+
+    @Test
+    public void onlyBetterEntries_replace() throws IOException {
+        final File file = File.createTempFile("positions", ".bin");
+        file.deleteOnExit();
+
+        final PositionStore store = new PositionStore(file);
+        store.load();
+
+        store.put(STEP, entry(10, 4, TranspositionTable.UPPER));
+        store.put(STEP, entry(20, 3, TranspositionTable.EXACT)); // shallower
+        assertEquals(10, PositionStore.getScore(store.get(STEP)));
+
+        store.put(STEP, entry(30, 4, TranspositionTable.EXACT)); // same depth but exact
+        store.put(STEP, entry(40, 4, TranspositionTable.UPPER));
+        assertEquals(30, PositionStore.getScore(store.get(STEP)));
+
+        store.put(STEP, entry(-50, 5, TranspositionTable.UPPER)); // deeper
+        assertEquals(-50, PositionStore.getScore(store.get(STEP)));
+        assertEquals(5, PositionStore.getDepth(store.get(STEP)));
+        store.close();
+    }
+
+    @Test
+    public void positionsEvictedFromTheCache_areStillFound_andNotWrittenTwice() throws IOException {
+        final File file = File.createTempFile("positions", ".bin");
+        file.deleteOnExit();
+
+        final PositionStore store = new PositionStore(file, 16); // far fewer than the positions
+        store.load();
+        for(long key=1; key<=1000; key++) store.put(key * STEP, entry((int)key, 3, TranspositionTable.EXACT));
+        final long length = file.length();
+
+        for(long key=1; key<=1000; key++){
+            assertEquals((int)key, PositionStore.getScore(store.get(key * STEP)));
+            store.put(key * STEP, entry(0, 2, TranspositionTable.EXACT)); // shallower, searched again
+        }
+        assertEquals(1000, store.size());
+        assertEquals(length, file.length());
+        assertEquals(1, PositionStore.getScore(store.get(STEP)));
+        store.close();
+    }
+
+    @Test
+    public void appendOnlyFile_isConverted() throws IOException {
+        final File file = File.createTempFile("positions", ".bin");
+        file.deleteOnExit();
+
+        try(RandomAccessFile v2 = new RandomAccessFile(file, "rw")){ // header, then key | score | depth | bound | version | completed
+            v2.writeInt(0x48455853);
+            v2.writeInt(2);
+            v2.writeInt(3);
+            v2.writeInt(0);
+            writeV2Record(v2, STEP, 10, 3);
+            writeV2Record(v2, 2 * STEP, 20, 3);
+            writeV2Record(v2, STEP, 30, 5); // deeper, replaces the first
+        }
+
+        final PositionStore store = new PositionStore(file);
+        store.load();
+        assertEquals(2, store.size());
+        assertEquals(30, PositionStore.getScore(store.get(STEP)));
+        assertEquals(20, PositionStore.getScore(store.get(2 * STEP)));
+        store.close();
+    }
+
+    @Test
+    public void secondStore_loadsOnlyAfterTheFirstIsClosed() throws Exception {
+        final File file = File.createTempFile("positions", ".bin");
+        file.deleteOnExit();
+
+        final PositionStore first = new PositionStore(file);
+        first.load();
+
+        final PositionStore second = new PositionStore(file);
+        final Thread loader = new Thread(() -> {
+            try{
+                second.load();
+            }catch (IOException ignored){}
+        });
+        loader.start();
+        loader.join(200);
+        assertFalse(second.isLoaded()); // still waiting for the first one
+
+        first.put(STEP, entry(7, 2, TranspositionTable.EXACT));
+        first.close();
+        loader.join(5_000);
+
+        assertTrue(second.isLoaded());
+        assertEquals(7, PositionStore.getScore(second.get(STEP))); // sees what the first one wrote last
+        second.close();
+    }
+
+    private static void writeV2Record(RandomAccessFile file, long key, int score, int depth) throws IOException {
+        file.writeLong(key);
+        file.writeInt(score);
+        file.writeByte(depth);
+        file.writeByte(TranspositionTable.EXACT);
+        file.writeByte(1);
+        file.writeByte(1);
+    }
+
+    private static long entry(int score, int depth, int bound){
+        return PositionStore.pack(score, depth, bound, 1, true);
+    }
+}